@@ -0,0 +1,89 @@
+package deque;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* Queue churn through ArrayDeque: a deque of a given size has items added at one end and
+ * removed at the other, is read by index, and is copied in bulk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArrayDequeBenchmark {
+    private static final int OPS = 1 << 16;
+
+    @Param({"16", "1024", "65536"})
+    public int size;
+
+    private ArrayDeque<Integer> deque;
+    private ArrayDeque<Integer> copy;
+
+    @Setup
+    public void fill() {
+        deque = new ArrayDeque<>();
+        for (int i = 0; i < size; i++) {
+            deque.addLast(i);
+        }
+        copy = new ArrayDeque<>();
+    }
+
+    /* One addLast and one removeFirst per op, wrapping around the ring */
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public Integer churn() {
+        Integer item = null;
+        for (int i = 0; i < OPS; i++) {
+            deque.addLast(i & 1023);
+            item = deque.removeFirst();
+        }
+        return item;
+    }
+
+    /* Fill up from empty and drain back down, through every resize both ways */
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public int growAndShrink() {
+        ArrayDeque<Integer> d = new ArrayDeque<>();
+        Integer item = 0;
+        for (int i = 0; i < OPS / 2; i++) {
+            d.addFirst(item);
+        }
+        int n = 0;
+        while (d.removeLast() != null) {
+            n++;
+        }
+        return n;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public int get() {
+        int sum = 0;
+        for (int i = 0; i < OPS; i++) {
+            sum += deque.get(i & (size - 1));
+        }
+        return sum;
+    }
+
+    /* Copy the whole deque into another one and drain that out again */
+    @Benchmark
+    public int addAllDrainTo() {
+        copy.addAll(deque);
+        return copy.drainTo(new ArrayDeque<>(size));
+    }
+}
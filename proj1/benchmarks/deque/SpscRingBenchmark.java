@@ -0,0 +1,189 @@
+package deque;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* SpscRingDeque against ArrayBlockingQueue, the queue game2048.GUI hands keys over with,
+ * between one producer and one consumer thread.
+ *
+ * Throughput: the producer offers and the consumer polls as fast as they can, without ever
+ * blocking; the "sent" and "received" counters give the items actually handed over per
+ * second, failed offers and empty polls aside.
+ * Latency: a token goes back and forth between the benchmark thread and an echo thread
+ * through a pair of queues, and the round trip is sampled.
+ * Both need two free cores to mean anything.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpscRingBenchmark {
+    private static final Integer TOKEN = 42;
+
+    @State(Scope.Group)
+    public static class Queues {
+        @Param({"1024"})
+        public int capacity;
+
+        SpscRingDeque<Integer> ring;
+        BlockingQueue<Integer> blocking;
+
+        @Setup(Level.Iteration)
+        public void create() {
+            ring = new SpscRingDeque<>(capacity);
+            blocking = new ArrayBlockingQueue<>(capacity);
+        }
+    }
+
+    /* Items handed over by each side */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long sent;
+        public long received;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            sent = 0;
+            received = 0;
+        }
+    }
+
+    @Benchmark
+    @Group("ringThroughput")
+    @GroupThreads(1)
+    public void ringOffer(Queues q, Counters c) {
+        if (q.ring.offer(TOKEN)) {
+            c.sent++;
+        }
+    }
+
+    @Benchmark
+    @Group("ringThroughput")
+    @GroupThreads(1)
+    public void ringPoll(Queues q, Counters c) {
+        if (q.ring.poll() != null) {
+            c.received++;
+        }
+    }
+
+    @Benchmark
+    @Group("blockingThroughput")
+    @GroupThreads(1)
+    public void blockingOffer(Queues q, Counters c) {
+        if (q.blocking.offer(TOKEN)) {
+            c.sent++;
+        }
+    }
+
+    @Benchmark
+    @Group("blockingThroughput")
+    @GroupThreads(1)
+    public void blockingPoll(Queues q, Counters c) {
+        if (q.blocking.poll() != null) {
+            c.received++;
+        }
+    }
+
+    /* A pair of rings and an echo thread sending back whatever comes in on ping */
+    @State(Scope.Benchmark)
+    public static class RingPingPong {
+        final SpscRingDeque<Integer> ping = new SpscRingDeque<>(2);
+        final SpscRingDeque<Integer> pong = new SpscRingDeque<>(2);
+        private Thread echo;
+
+        @Setup(Level.Trial)
+        public void start() {
+            echo = new Thread(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Integer item = ping.poll();
+                    if (item != null) {
+                        while (!pong.offer(item)) {
+                            Thread.onSpinWait();
+                        }
+                    } else {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            echo.setDaemon(true);
+            echo.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() throws InterruptedException {
+            echo.interrupt();
+            echo.join();
+        }
+    }
+
+    /* The same over ArrayBlockingQueues, with the blocking put and take */
+    @State(Scope.Benchmark)
+    public static class BlockingPingPong {
+        final BlockingQueue<Integer> ping = new ArrayBlockingQueue<>(2);
+        final BlockingQueue<Integer> pong = new ArrayBlockingQueue<>(2);
+        private Thread echo;
+
+        @Setup(Level.Trial)
+        public void start() {
+            echo = new Thread(() -> {
+                try {
+                    while (true) {
+                        pong.put(ping.take());
+                    }
+                } catch (InterruptedException e) {
+                    // stopped
+                }
+            });
+            echo.setDaemon(true);
+            echo.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() throws InterruptedException {
+            echo.interrupt();
+            echo.join();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Integer ringRoundTrip(RingPingPong p) {
+        while (!p.ping.offer(TOKEN)) {
+            Thread.onSpinWait();
+        }
+        Integer item;
+        while ((item = p.pong.poll()) == null) {
+            Thread.onSpinWait();
+        }
+        return item;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Integer blockingRoundTrip(BlockingPingPong p) throws InterruptedException {
+        p.ping.put(TOKEN);
+        return p.pong.take();
+    }
+}
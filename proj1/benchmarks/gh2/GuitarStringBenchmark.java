@@ -0,0 +1,112 @@
+package gh2;
+
+import deque.ArrayDeque;
+import deque.Deque;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* One second of GuitarPlayer's inner loop: every string is sampled and tic'ed once per
+ * sample, 44100 times. GuitarString keeps its buffer in a DoubleArrayDeque; BoxedString
+ * is the same string over a Deque<Double>, as GuitarString used to be.
+ * Run with -prof gc: the primitive string allocates nothing per tic, the boxed one a
+ * Double per tic, which is what keeps the collector busy.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GuitarStringBenchmark {
+    private static final int SAMPLES = 44100;
+
+    @Param({"128"})
+    public int strings;
+
+    private GuitarString[] primitive;
+    private BoxedString[] boxed;
+
+    /* A GuitarString over a boxed Deque<Double>, for comparison */
+    static class BoxedString {
+        private static final double DECAY = .996;
+        private final Deque<Double> buffer = new ArrayDeque<>();
+
+        BoxedString(double frequency) {
+            int capacity = (int) Math.round(44100 / frequency);
+            for (int i = 0; i < capacity; i++) {
+                buffer.addLast(0.0);
+            }
+        }
+
+        void pluck() {
+            int size = buffer.size();
+            for (int i = 0; i < size; i++) {
+                buffer.removeFirst();
+                buffer.addLast(Math.random() - 0.5);
+            }
+        }
+
+        void tic() {
+            double first = buffer.removeFirst();
+            double second = buffer.get(0);
+            buffer.addLast((first + second) * 0.5 * DECAY);
+        }
+
+        double sample() {
+            return buffer.get(0);
+        }
+    }
+
+    @Setup
+    public void pluckAll() {
+        primitive = new GuitarString[strings];
+        boxed = new BoxedString[strings];
+        for (int i = 0; i < strings; i++) {
+            double frequency = 440.0 * Math.pow(2.0, (i - 69.0) / 12.0);
+            primitive[i] = new GuitarString(frequency);
+            primitive[i].pluck();
+            boxed[i] = new BoxedString(frequency);
+            boxed[i].pluck();
+        }
+    }
+
+    /* Time per sample of all the strings */
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public double doubleArrayDeque() {
+        double sum = 0;
+        for (int t = 0; t < SAMPLES; t++) {
+            for (GuitarString s : primitive) {
+                sum += s.sample();
+                s.tic();
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public double boxedDeque() {
+        double sum = 0;
+        for (int t = 0; t < SAMPLES; t++) {
+            for (BoxedString s : boxed) {
+                sum += s.sample();
+                s.tic();
+            }
+        }
+        return sum;
+    }
+}
@@ -1,67 +1,94 @@
 package deque;
 
+import java.lang.reflect.Array;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 
+/* An array deque kept in a ring whose capacity is a power of two, so that positions wrap
+ * with "& mask" rather than a branch. Items run from items[first] for size positions,
+ * wrapping past the end of the array at most once, so the ring is always two contiguous
+ * segments: resizing and the bulk operations copy them with System.arraycopy.
+ * The ring doubles when an add finds it full, and halves when a remove leaves it less
+ * than a quarter full, so it is at most half full right after shrinking and a deque
+ * hovering around one size never resizes back and forth. Items may be null.
+ */
 public class ArrayDeque<T> implements Iterable<T>, Deque<T> {
+    private static final int MIN_CAPACITY = 8;
+
     private T[] items;
+    private int mask;
     private int first;
-    private int last;
     private int size;
-    private int capacity;
 
     public ArrayDeque() {
-        items = (T[]) new Object[8];
-        first = 4;
-        last = 3;
-        size = 0;
-        capacity = 8;
+        this(MIN_CAPACITY);
     }
 
-    private void resize(int newCapacity) {
-        // Create a new array of size new_capacity
-        T[] a = (T[]) new Object[newCapacity];
-        // Copy items into new array
-        if (newCapacity > capacity) {
-            System.arraycopy(items, first, a, 0, capacity - first);
-            System.arraycopy(items, 0, a, capacity - first, first);
-            last = capacity - 1;
-        } else {
-            int j = 0;
-            for (int i = 0; i < capacity; ++i) {
-                if (items[i] != null) {
-                    a[j++] = items[i];
-                }
-            }
-            last = size - 1;
+    /* Creates an empty deque that holds at least the given number of items without resizing */
+    public ArrayDeque(int capacity) {
+        items = newArray(ringSize(capacity));
+        mask = items.length - 1;
+    }
+
+    /* Returns the smallest power of two that is at least MIN_CAPACITY and n */
+    private static int ringSize(int n) {
+        int c = MIN_CAPACITY;
+        while (c < n) {
+            c <<= 1;
         }
-        capacity = newCapacity;
-        first = 0;
+        return c;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T[] newArray(int capacity) {
+        return (T[]) new Object[capacity];
+    }
+
+    /* Copies the n items from index from on into dest, starting at destPos */
+    private void copyOut(int from, Object[] dest, int destPos, int n) {
+        int start = (first + from) & mask;
+        int head = Math.min(n, items.length - start);
+        System.arraycopy(items, start, dest, destPos, head);
+        System.arraycopy(items, 0, dest, destPos + head, n - head);
+    }
+
+    private void resize(int newCapacity) {
+        T[] a = newArray(newCapacity);
+        copyOut(0, a, 0, size);
         items = a;
+        mask = newCapacity - 1;
+        first = 0;
+    }
+
+    private void ensureCapacity(int n) {
+        if (n > items.length) {
+            resize(ringSize(n));
+        }
+    }
+
+    private void shrinkIfSparse() {
+        if (items.length > MIN_CAPACITY && size < (items.length >> 2)) {
+            resize(items.length >> 1);
+        }
     }
 
     public void addFirst(T item) {
-        // Update first
-        if (--first < 0) {
-            first += capacity;
+        if (size == items.length) {
+            resize(items.length << 1);
         }
-        // Add item to items[first]
+        first = (first - 1) & mask;
         items[first] = item;
-        // Double the size of the array if capacity is reached, and aupdate size
-        if (++size == capacity) {
-            resize(capacity * 2);
-        }
+        size++;
     }
 
     public void addLast(T item) {
-        if (++last >= capacity) {
-            last -= capacity;
-        }
-        // Add item to the last index
-        items[last] = item;
-        // Double the size of the array if capacity is reached, and update size
-        if (++size == capacity) {
-            resize(capacity * 2);
+        if (size == items.length) {
+            resize(items.length << 1);
         }
+        items[(first + size) & mask] = item;
+        size++;
     }
 
     public int size() {
@@ -69,12 +96,8 @@ public class ArrayDeque<T> implements Iterable<T>, Deque<T> {
     }
 
     public void printDeque() {
-        int ptr = first - 1;
         for (int i = 0; i < size; i++) {
-            if (++ptr >= capacity) {
-                ptr -= capacity;
-            }
-            System.out.print(items[ptr].toString() + " ");
+            System.out.print(items[(first + i) & mask] + " ");
         }
         System.out.print("\n");
     }
@@ -83,45 +106,94 @@ public class ArrayDeque<T> implements Iterable<T>, Deque<T> {
         if (size == 0) {
             return null;
         }
-        // Remove item from items[first]
-        T temp = items[first];
+        T item = items[first];
         items[first] = null;
-        // Update first
-        if (++first >= capacity) {
-            first -= capacity;
-        }
-        // Shrink the array if size = 1/4 of the capacity, and update size
-        int quarter = (int) Math.round(0.25 * capacity);
-        if (--size < quarter && size > 1) {
-            resize(quarter);
-        }
-        return temp;
+        first = (first + 1) & mask;
+        size--;
+        shrinkIfSparse();
+        return item;
     }
 
     public T removeLast() {
         if (size == 0) {
             return null;
         }
-        // Remove item from items[last]
-        T temp = items[last];
+        size--;
+        int last = (first + size) & mask;
+        T item = items[last];
         items[last] = null;
-        // Update last
-        if (--last < 0) {
-            last += capacity;
+        shrinkIfSparse();
+        return item;
+    }
+
+    public T get(int index) {
+        if (index < 0 || index >= size) {
+            return null;
         }
-        // Shrink the array if size = 1/4 of the capacity, and update size
-        int quarter = (int) Math.round(0.25 * capacity);
-        if (--size < quarter && size > 1) {
-            resize(quarter);
+        return items[(first + index) & mask];
+    }
+
+    /* Bulk operations */
+
+    /* Adds all the items of other, in order, at the end of this deque */
+    public void addAll(ArrayDeque<? extends T> other) {
+        int n = other.size;
+        ensureCapacity(size + n);
+        // The free part of the ring may wrap too: fill up to the end of the array, then from 0
+        int tail = (first + size) & mask;
+        int head = Math.min(n, items.length - tail);
+        other.copyOut(0, items, tail, head);
+        other.copyOut(head, items, 0, n - head);
+        size += n;
+    }
+
+    /* Moves all the items of this deque, in order, to the end of target, leaving this
+     * deque empty. Returns the number of items moved. The target cannot be this deque,
+     * as with BlockingQueue.drainTo.
+     */
+    public int drainTo(ArrayDeque<? super T> target) {
+        if (target == this) {
+            throw new IllegalArgumentException("cannot drain a deque to itself");
         }
-        return temp;
+        int n = size;
+        target.addAll(this);
+        clear();
+        return n;
     }
 
-    public T get(int index) {
-        if (first + index < capacity) {
-            return items[first + index];
+    /* Removes all the items */
+    public void clear() {
+        if (items.length > MIN_CAPACITY) {
+            items = newArray(MIN_CAPACITY);
+            mask = MIN_CAPACITY - 1;
+        } else {
+            Arrays.fill(items, null);
         }
-        return items[first + index - capacity];
+        first = 0;
+        size = 0;
+    }
+
+    /* Returns the items from first to last in a new array */
+    public Object[] toArray() {
+        Object[] a = new Object[size];
+        copyOut(0, a, 0, size);
+        return a;
+    }
+
+    /* Returns the items from first to last in a, if it is large enough, or else in a new
+     * array of the same type. As for java.util.Collection, a[size] is set to null if a has
+     * room to spare.
+     */
+    @SuppressWarnings("unchecked")
+    public <E> E[] toArray(E[] a) {
+        if (a.length < size) {
+            a = (E[]) Array.newInstance(a.getClass().getComponentType(), size);
+        }
+        copyOut(0, a, 0, size);
+        if (a.length > size) {
+            a[size] = null;
+        }
+        return a;
     }
 
     /* Implement iterator */
@@ -130,7 +202,7 @@ public class ArrayDeque<T> implements Iterable<T>, Deque<T> {
         return new ArrayDequeIterator();
     }
 
-    private class ArrayDequeIterator implements Iterator {
+    private class ArrayDequeIterator implements Iterator<T> {
         int pos;
 
         ArrayDequeIterator() {
@@ -143,8 +215,11 @@ public class ArrayDeque<T> implements Iterable<T>, Deque<T> {
         }
 
         @Override
-        public Object next() {
-            T returnItem = get(pos);
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T returnItem = items[(first + pos) & mask];
             pos++;
             return returnItem;
         }
@@ -156,24 +231,28 @@ public class ArrayDeque<T> implements Iterable<T>, Deque<T> {
         if (other == this) {
             return true;
         }
-        if (other == null) {
+        if (!(other instanceof Deque)) {
             return false;
         }
-        if (other.getClass() != this.getClass() && !(other instanceof Deque)) {
-            return false;
-        }
-        Deque<T> o = (Deque<T>) other;
+        Deque<?> o = (Deque<?>) other;
 
         if (o.size() != this.size()) {
             return false;
         }
         for (int i = 0; i < size; i++) {
-            T thisItem = this.get(i);
-            T otherItem = o.get(i);
-            if (!thisItem.equals(otherItem)) {
+            if (!Objects.equals(get(i), o.get(i))) {
                 return false;
             }
         }
         return true;
     }
+
+    @Override
+    public int hashCode() {
+        int h = 1;
+        for (int i = 0; i < size; i++) {
+            h = 31 * h + Objects.hashCode(items[(first + i) & mask]);
+        }
+        return h;
+    }
 }
@@ -366,6 +366,83 @@ public class ArrayDequeTest {
         assert ans == 20;
     }
 
+    @Test
+    /* Null items are kept like any other, including across resizes */
+    public void nullItemTest() {
+        ArrayDeque<String> ad = new ArrayDeque<>();
+        for (int i = 0; i < 40; i++) {
+            ad.addLast(i % 3 == 0 ? null : "s" + i);
+        }
+        // Shrink back down, past several resizes
+        for (int i = 0; i < 35; i++) {
+            ad.removeFirst();
+        }
+        assertEquals(5, ad.size());
+        assertEquals("s35", ad.get(0));
+        assertNull(ad.get(1));
+        assertEquals("s37", ad.get(2));
+        assertEquals("s38", ad.get(3));
+        assertNull(ad.get(4));
+        assertNull(ad.get(5));
+    }
+
+    @Test
+    /* addAll, drainTo and toArray keep the order of items whose ring wraps around */
+    public void bulkTest() {
+        ArrayDeque<Integer> a = new ArrayDeque<>();
+        ArrayDeque<Integer> b = new ArrayDeque<>();
+        for (int i = 0; i < 6; i++) {
+            a.addLast(i);
+            b.addFirst(-i - 1);
+        }
+        a.addAll(b);
+        assertEquals(12, a.size());
+        Integer[] expected = {0, 1, 2, 3, 4, 5, -6, -5, -4, -3, -2, -1};
+        assertArrayEquals(expected, a.toArray(new Integer[0]));
+        assertArrayEquals(expected, a.toArray());
+
+        ArrayDeque<Object> target = new ArrayDeque<>();
+        target.addLast("x");
+        assertEquals(12, a.drainTo(target));
+        assertTrue(a.isEmpty());
+        assertEquals(13, target.size());
+        assertEquals("x", target.get(0));
+        assertEquals(-1, target.get(12));
+
+        // Adding a deque to itself doubles it
+        b.addAll(b);
+        assertEquals(12, b.size());
+        assertEquals(b.get(0), b.get(6));
+        assertEquals(b.get(5), b.get(11));
+    }
+
+    @Test
+    /* Draining a deque to itself is refused and leaves it as it was */
+    public void drainToSelfTest() {
+        ArrayDeque<Integer> ad = new ArrayDeque<>();
+        for (int i = 0; i < 5; i++) {
+            ad.addLast(i);
+        }
+        try {
+            ad.drainTo(ad);
+            fail("drainTo itself should throw");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(5, ad.size());
+        assertEquals(0, (int) ad.get(0));
+        assertEquals(4, (int) ad.get(4));
+    }
+
+    @Test
+    /* An index outside the deque gets null */
+    public void getOutOfRangeTest() {
+        ArrayDeque<Integer> ad = new ArrayDeque<>();
+        ad.addLast(1);
+        assertNull(ad.get(-1));
+        assertNull(ad.get(1));
+    }
+
     /* TODO simulate random test */
     /* Goal: make 500 random calls to addFirst removeLast and isEmpty */
     @Test
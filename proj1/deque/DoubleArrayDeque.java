@@ -0,0 +1,107 @@
+package deque;
+
+import java.util.NoSuchElementException;
+
+/* An array deque of primitive doubles, kept in a double[] ring whose capacity is a power
+ * of two, so positions wrap with a mask instead of a branch.
+ * The ring doubles when it is full and halves when it drops to a quarter full, never
+ * below the capacity it was created with: a deque that stays around one size, like the
+ * buffer of a GuitarString, is never resized and allocates nothing after construction.
+ */
+public class DoubleArrayDeque implements DoubleDeque {
+    private static final int MIN_CAPACITY = 8;
+
+    private double[] items;
+    private int mask;
+    private int first;
+    private int size;
+    private final int minCapacity;
+
+    public DoubleArrayDeque() {
+        this(MIN_CAPACITY);
+    }
+
+    /* Creates an empty deque that holds at least the given number of items without resizing */
+    public DoubleArrayDeque(int capacity) {
+        int c = MIN_CAPACITY;
+        while (c < capacity) {
+            c <<= 1;
+        }
+        items = new double[c];
+        mask = c - 1;
+        minCapacity = c;
+    }
+
+    private void resize(int newCapacity) {
+        double[] a = new double[newCapacity];
+        // Copy the two segments of the ring: first..end of array, then start of array..last
+        int head = Math.min(size, items.length - first);
+        System.arraycopy(items, first, a, 0, head);
+        System.arraycopy(items, 0, a, head, size - head);
+        items = a;
+        mask = newCapacity - 1;
+        first = 0;
+    }
+
+    private void shrinkIfSparse() {
+        if (items.length > minCapacity && size < (items.length >> 2)) {
+            resize(items.length >> 1);
+        }
+    }
+
+    public void addFirstDouble(double item) {
+        if (size == items.length) {
+            resize(items.length << 1);
+        }
+        first = (first - 1) & mask;
+        items[first] = item;
+        size++;
+    }
+
+    public void addLastDouble(double item) {
+        if (size == items.length) {
+            resize(items.length << 1);
+        }
+        items[(first + size) & mask] = item;
+        size++;
+    }
+
+    public double removeFirstDouble() {
+        if (size == 0) {
+            throw new NoSuchElementException("deque is empty");
+        }
+        double item = items[first];
+        first = (first + 1) & mask;
+        size--;
+        shrinkIfSparse();
+        return item;
+    }
+
+    public double removeLastDouble() {
+        if (size == 0) {
+            throw new NoSuchElementException("deque is empty");
+        }
+        size--;
+        double item = items[(first + size) & mask];
+        shrinkIfSparse();
+        return item;
+    }
+
+    public double getDouble(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+        return items[(first + index) & mask];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void printDeque() {
+        for (int i = 0; i < size; i++) {
+            System.out.print(items[(first + i) & mask] + " ");
+        }
+        System.out.print("\n");
+    }
+}
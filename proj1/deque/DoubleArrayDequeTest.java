@@ -0,0 +1,106 @@
+package deque;
+
+import org.junit.Test;
+
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.*;
+
+public class DoubleArrayDequeTest {
+    @Test
+    /* Adds at both ends and checks the order items come back in */
+    public void addGetRemoveTest() {
+        DoubleArrayDeque dd = new DoubleArrayDeque();
+        assertTrue(dd.isEmpty());
+        dd.addLastDouble(2.0);
+        dd.addFirstDouble(1.0);
+        dd.addLastDouble(3.0);
+        assertEquals(3, dd.size());
+        assertEquals(1.0, dd.getDouble(0), 0.0);
+        assertEquals(2.0, dd.getDouble(1), 0.0);
+        assertEquals(3.0, dd.getDouble(2), 0.0);
+
+        assertEquals(1.0, dd.removeFirstDouble(), 0.0);
+        assertEquals(3.0, dd.removeLastDouble(), 0.0);
+        assertEquals(2.0, dd.removeLastDouble(), 0.0);
+        assertTrue(dd.isEmpty());
+    }
+
+    @Test
+    /* Grows well past the initial capacity, wrapping around the ring, then shrinks back */
+    public void resizeTest() {
+        DoubleArrayDeque dd = new DoubleArrayDeque();
+        for (int i = 0; i < 1000; i++) {
+            if (i % 2 == 0) {
+                dd.addLastDouble(i);
+            } else {
+                dd.addFirstDouble(-i);
+            }
+        }
+        assertEquals(1000, dd.size());
+        assertEquals(-999.0, dd.getDouble(0), 0.0);
+        assertEquals(998.0, dd.getDouble(999), 0.0);
+        for (int i = 999; i >= 0; i--) {
+            if (i % 2 == 0) {
+                assertEquals(i, dd.removeLastDouble(), 0.0);
+            } else {
+                assertEquals(-i, dd.removeFirstDouble(), 0.0);
+            }
+        }
+        assertTrue(dd.isEmpty());
+    }
+
+    @Test
+    /* The primitive methods throw on an empty deque, the Deque<Double> ones return null */
+    public void emptyTest() {
+        DoubleArrayDeque dd = new DoubleArrayDeque();
+        assertNull(dd.removeFirst());
+        assertNull(dd.removeLast());
+        assertNull(dd.get(0));
+        try {
+            dd.removeFirstDouble();
+            fail("removeFirstDouble on an empty deque should throw");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+        try {
+            dd.removeLastDouble();
+            fail("removeLastDouble on an empty deque should throw");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+        try {
+            dd.getDouble(0);
+            fail("getDouble past the end should throw");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    /* The boxed Deque<Double> methods see the same items as the primitive ones */
+    public void boxedTest() {
+        Deque<Double> d = new DoubleArrayDeque();
+        d.addLast(1.5);
+        d.addFirst(0.5);
+        assertEquals(Double.valueOf(0.5), d.get(0));
+        assertEquals(Double.valueOf(1.5), d.removeLast());
+        assertEquals(Double.valueOf(0.5), d.removeFirst());
+        assertTrue(d.isEmpty());
+    }
+
+    @Test
+    /* Rotating a deque wraps around its ring and brings the items back in order */
+    public void rotateTest() {
+        DoubleArrayDeque dd = new DoubleArrayDeque(100);
+        for (int i = 0; i < 100; i++) {
+            dd.addLastDouble(i);
+        }
+        for (int i = 0; i < 10000; i++) {
+            dd.addLastDouble(dd.removeFirstDouble());
+        }
+        assertEquals(100, dd.size());
+        assertEquals(0.0, dd.getDouble(0), 0.0);
+        assertEquals(99.0, dd.getDouble(99), 0.0);
+    }
+}
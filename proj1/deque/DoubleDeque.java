@@ -0,0 +1,55 @@
+package deque;
+
+/* A deque of primitive doubles. The *Double methods never box, so a client that only
+ * uses them allocates nothing once the deque has grown to its working size.
+ * The Deque<Double> methods are still there for code written against Deque, and box.
+ */
+public interface DoubleDeque extends Deque<Double> {
+
+    void addFirstDouble(double item);
+
+    void addLastDouble(double item);
+
+    /* Removes and returns the item at the front of the deque.
+     * Throws NoSuchElementException if the deque is empty.
+     */
+    double removeFirstDouble();
+
+    /* Removes and returns the item at the end of the deque.
+     * Throws NoSuchElementException if the deque is empty.
+     */
+    double removeLastDouble();
+
+    /* Gets the item at the given index, where 0 is the front.
+     * Throws IndexOutOfBoundsException if no such item exists.
+     */
+    double getDouble(int index);
+
+    @Override
+    default void addFirst(Double item) {
+        addFirstDouble(item);
+    }
+
+    @Override
+    default void addLast(Double item) {
+        addLastDouble(item);
+    }
+
+    @Override
+    default Double removeFirst() {
+        return isEmpty() ? null : removeFirstDouble();
+    }
+
+    @Override
+    default Double removeLast() {
+        return isEmpty() ? null : removeLastDouble();
+    }
+
+    @Override
+    default Double get(int index) {
+        if (index < 0 || index >= size()) {
+            return null;
+        }
+        return getDouble(index);
+    }
+}
@@ -1,45 +1,177 @@
 package deque;
 
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
 
+/* An ArrayDeque that knows its maximum item under the comparator it was created with.
+ *
+ * The items are seen as two stacks back to back: the front part, items 0 to f - 1, and the
+ * back part, items f to size - 1. Alongside each part an auxiliary deque keeps running
+ * maxima: frontMax.get(j) is the largest of items j to f - 1, and backMax.get(k) the
+ * largest of items f to f + k. Adding or removing at either end pushes or pops one running
+ * maximum, so max() only has to compare the two ends, frontMax.get(0) and the last of
+ * backMax. When one part runs out while the other still has items, the remaining items
+ * are split in half again and both parts rebuilt; halving makes that O(1) amortized, like
+ * the resizing of the ring. A single monotonic deque would be cheaper, but only works when
+ * items are added at one end and removed at the other; slidingMax and slidingMin use one.
+ * Among equal maxima, max() returns the one nearest the front.
+ */
 public class MaxArrayDeque<T> extends ArrayDeque<T> {
     private Comparator<T> myComparator;
+    private final ArrayDeque<T> frontMax = new ArrayDeque<>();
+    private final ArrayDeque<T> backMax = new ArrayDeque<>();
+
     /* Creates a MaxArrayDeque with the given Comparator. */
     public MaxArrayDeque(Comparator<T> c) {
         myComparator = c;
     }
 
+    /* Returns the larger of a and b, or a if they are equal */
+    private T larger(T a, T b) {
+        return myComparator.compare(a, b) >= 0 ? a : b;
+    }
+
+    @Override
+    public void addFirst(T item) {
+        super.addFirst(item);
+        frontMax.addFirst(frontMax.isEmpty() ? item : larger(item, frontMax.get(0)));
+    }
+
+    @Override
+    public void addLast(T item) {
+        super.addLast(item);
+        pushBack(item);
+    }
+
+    private void pushBack(T item) {
+        backMax.addLast(backMax.isEmpty() ? item : larger(backMax.get(backMax.size() - 1), item));
+    }
+
+    @Override
+    public T removeFirst() {
+        if (isEmpty()) {
+            return null;
+        }
+        if (frontMax.isEmpty()) {
+            split((size() + 1) / 2);
+        }
+        frontMax.removeFirst();
+        return super.removeFirst();
+    }
+
+    @Override
+    public T removeLast() {
+        if (isEmpty()) {
+            return null;
+        }
+        if (backMax.isEmpty()) {
+            split(size() / 2);
+        }
+        backMax.removeLast();
+        return super.removeLast();
+    }
+
+    /* Rebuilds the running maxima with the first f items as the front part */
+    private void split(int f) {
+        int n = size();
+        frontMax.clear();
+        backMax.clear();
+        for (int i = f - 1; i >= 0; i--) {
+            T item = get(i);
+            frontMax.addFirst(frontMax.isEmpty() ? item : larger(item, frontMax.get(0)));
+        }
+        for (int i = f; i < n; i++) {
+            pushBack(get(i));
+        }
+    }
+
+    @Override
+    public void addAll(ArrayDeque<? extends T> other) {
+        int n = size();
+        super.addAll(other);
+        for (int i = n; i < size(); i++) {
+            pushBack(get(i));
+        }
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        frontMax.clear();
+        backMax.clear();
+    }
+
     /* Returns the maximum element in the deque as governed by the previously given Comparator.
-     * If the MaxArrayDeque is empty, simply return null.
+     * If the MaxArrayDeque is empty, simply return null. O(1).
      * */
     public T max() {
-        if (this == null) {
-            return null;
+        if (frontMax.isEmpty()) {
+            return backMax.isEmpty() ? null : backMax.get(backMax.size() - 1);
         }
-        T curMax = this.get(0);
-        for (int i = 0; i < this.size(); i++) {
-            T curItem = this.get(i);
-            if (myComparator.compare(curItem, curMax) > 0) {
-                curMax = curItem;
-            }
+        if (backMax.isEmpty()) {
+            return frontMax.get(0);
         }
-        return curMax;
+        return larger(frontMax.get(0), backMax.get(backMax.size() - 1));
     }
 
     /* Returns the maximum element in the deque as governed by the parameter Comparator c.
      * If the MaxArrayDeque is empty, simply return null.
+     * Only the Comparator given at creation is tracked; any other one takes a scan.
      * */
     public T max(Comparator<T> c) {
-        if (this == null) {
+        if (c == myComparator) {
+            return max();
+        }
+        if (isEmpty()) {
             return null;
         }
-        T curMax = this.get(0);
-        for (int i = 0; i < this.size(); i++) {
-            T curItem = this.get(i);
+        T curMax = get(0);
+        for (int i = 1; i < size(); i++) {
+            T curItem = get(i);
             if (c.compare(curItem, curMax) > 0) {
                 curMax = curItem;
             }
         }
         return curMax;
     }
+
+    /* Sliding windows */
+
+    /* Returns the maximum of each window of width consecutive items, in order: items.size()
+     * - width + 1 of them, or none if there are fewer than width items. Among equal maxima
+     * the last one is returned. Runs in O(n) with a monotonic deque: the indices of the
+     * items of the current window that no later item in it beats, their items decreasing
+     * from front to back, so the front is the maximum of the window.
+     */
+    public static <T> List<T> slidingMax(List<T> items, int width, Comparator<? super T> c) {
+        if (width < 1) {
+            throw new IllegalArgumentException("window width must be positive");
+        }
+        List<T> maxima = new ArrayList<>(Math.max(0, items.size() - width + 1));
+        ArrayDeque<Integer> candidates = new ArrayDeque<>(width);
+        for (int i = 0; i < items.size(); i++) {
+            T item = items.get(i);
+            // Items no larger than the new one can never be a maximum again
+            while (!candidates.isEmpty()
+                    && c.compare(items.get(candidates.get(candidates.size() - 1)), item) <= 0) {
+                candidates.removeLast();
+            }
+            candidates.addLast(i);
+            // Drop the front once it slides out of the window
+            if (candidates.get(0) <= i - width) {
+                candidates.removeFirst();
+            }
+            if (i >= width - 1) {
+                maxima.add(items.get(candidates.get(0)));
+            }
+        }
+        return maxima;
+    }
+
+    /* Returns the minimum of each window of width consecutive items, as slidingMax does. */
+    public static <T> List<T> slidingMin(List<T> items, int width, Comparator<? super T> c) {
+        Comparator<? super T> reversed = (a, b) -> c.compare(b, a);
+        return slidingMax(items, width, reversed);
+    }
 }
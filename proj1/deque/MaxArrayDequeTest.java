@@ -2,9 +2,15 @@ package deque;
 
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 public class MaxArrayDequeTest {
     @Test
@@ -106,4 +112,108 @@ public class MaxArrayDequeTest {
 
         assertEquals(500, mad.size());
     }
+
+    @Test
+    public void testRandomizedMax() {
+        /* Max should follow a scan through any mix of adds and removes at both ends */
+        Comparator<Integer> c = Comparator.naturalOrder();
+        MaxArrayDeque<Integer> mad = new MaxArrayDeque<>(c);
+        Random random = new Random(25);
+
+        for (int i = 0; i < 20000; i++) {
+            int op = random.nextInt(4);
+            if (op == 0) {
+                mad.addFirst(random.nextInt(100));
+            } else if (op == 1) {
+                mad.addLast(random.nextInt(100));
+            } else if (op == 2) {
+                mad.removeFirst();
+            } else {
+                mad.removeLast();
+            }
+            assertEquals(mad.max((a, b) -> a - b), mad.max());
+        }
+    }
+
+    @Test
+    public void testMaxTiesAndEmpty() {
+        /* Among equal maxima the frontmost is returned; an emptied deque has no max */
+        Comparator<String> c = Comparator.comparing(String::length);
+        MaxArrayDeque<String> mad = new MaxArrayDeque<>(c);
+        String first = new String("abc");
+        mad.addLast("ab");
+        mad.addLast(new String("abc"));
+        mad.addFirst(first);
+
+        assertSame(first, mad.max());
+        assertSame(first, mad.max(c));
+
+        mad.removeLast();
+        mad.removeLast();
+        mad.removeLast();
+        assertNull(mad.max());
+        assertNull(mad.max(Comparator.reverseOrder()));
+        assertNull(mad.removeLast());
+    }
+
+    @Test
+    public void testMaxAfterBulkOperations() {
+        Comparator<Integer> c = Comparator.naturalOrder();
+        MaxArrayDeque<Integer> mad = new MaxArrayDeque<>(c);
+        ArrayDeque<Integer> other = new ArrayDeque<>();
+        for (int i = 0; i < 10; i++) {
+            mad.addFirst(i);
+            other.addLast(i * 3);
+        }
+
+        mad.addAll(other);
+        assertEquals(27, (int) mad.max());
+        for (int i = 0; i < 10; i++) {
+            mad.removeLast();
+        }
+        assertEquals(9, (int) mad.max());
+
+        mad.clear();
+        assertNull(mad.max());
+        mad.addLast(-4);
+        assertEquals(-4, (int) mad.max());
+    }
+
+    @Test
+    public void testSlidingMaxMin() {
+        List<Integer> items = Arrays.asList(1, 3, -1, -3, 5, 3, 6, 7);
+        Comparator<Integer> c = Comparator.naturalOrder();
+
+        assertEquals(Arrays.asList(3, 3, 5, 5, 6, 7), MaxArrayDeque.slidingMax(items, 3, c));
+        assertEquals(Arrays.asList(-1, -3, -3, -3, 3, 3), MaxArrayDeque.slidingMin(items, 3, c));
+        assertEquals(items, MaxArrayDeque.slidingMax(items, 1, c));
+        assertEquals(Arrays.asList(7), MaxArrayDeque.slidingMax(items, 8, c));
+        assertEquals(0, MaxArrayDeque.slidingMax(items, 9, c).size());
+        try {
+            MaxArrayDeque.slidingMax(items, 0, c);
+            fail("width 0 should be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testStreamingWindow() {
+        /* A window kept by addLast and removeFirst should agree with slidingMax */
+        List<Integer> items = Arrays.asList(4, 2, 12, 3, 8, 8, 1, 0, 7, 5, 11, 2);
+        int width = 4;
+        Comparator<Integer> c = Comparator.naturalOrder();
+        List<Integer> expected = MaxArrayDeque.slidingMax(items, width, c);
+        MaxArrayDeque<Integer> window = new MaxArrayDeque<>(c);
+
+        for (int i = 0; i < items.size(); i++) {
+            window.addLast(items.get(i));
+            if (window.size() > width) {
+                window.removeFirst();
+            }
+            if (i >= width - 1) {
+                assertEquals(expected.get(i - width + 1), window.max());
+            }
+        }
+    }
 }
@@ -0,0 +1,159 @@
+package deque;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/* A bounded deque shared by exactly two threads: one producer, which adds at the end with
+ * addLast (or offer), and one consumer, which takes from the front with removeFirst (or
+ * poll) and may look at the items with get. The other end is not available:
+ * addFirst and removeLast throw UnsupportedOperationException. Items may not be null.
+ *
+ * No locks are taken. The items live in a power-of-two ring, and each side owns a sequence
+ * counter: tail, the number of items ever added, written only by the producer, and head,
+ * the number ever removed, written only by the consumer. A side publishes its counter with
+ * a release store after touching the ring, and reads the other side's with an acquire
+ * load before touching it, which is all the ordering the hand-over needs. Each counter is
+ * padded onto a cache line of its own, so the two threads do not invalidate each other's
+ * line on every operation, and each side caches the last value it saw of the other's
+ * counter, reading it again only when the ring looks full (or empty).
+ */
+public class SpscRingDeque<T> implements Deque<T> {
+
+    /* A long on a cache line of its own, padded on both sides by inheritance, which
+     * HotSpot lays out superclass fields first */
+    private static class LhsPadding {
+        long p01, p02, p03, p04, p05, p06, p07;
+    }
+
+    private static class Value extends LhsPadding {
+        /* The counter, read by the other side */
+        volatile long value;
+        /* The owner's cached copy of the other side's counter */
+        long cached;
+    }
+
+    private static class Sequence extends Value {
+        long p11, p12, p13, p14, p15, p16, p17;
+    }
+
+    private static final VarHandle VALUE;
+
+    static {
+        try {
+            VALUE = MethodHandles.lookup().findVarHandle(Value.class, "value", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Object[] items;
+    private final int mask;
+    private final Sequence head = new Sequence();
+    private final Sequence tail = new Sequence();
+
+    /* Creates an empty ring that holds at least capacity items */
+    public SpscRingDeque(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        int c = 1;
+        while (c < capacity) {
+            c <<= 1;
+        }
+        items = new Object[c];
+        mask = c - 1;
+    }
+
+    public int capacity() {
+        return items.length;
+    }
+
+    /* Producer side */
+
+    /* Adds item, which must not be null, at the end, unless the ring is full.
+     * Returns true iff it was added.
+     */
+    public boolean offer(T item) {
+        if (item == null) {
+            throw new NullPointerException("null marks an empty slot");
+        }
+        long t = (long) VALUE.getOpaque(tail);
+        if (t - tail.cached == items.length) {
+            tail.cached = (long) VALUE.getAcquire(head);
+            if (t - tail.cached == items.length) {
+                return false;
+            }
+        }
+        items[(int) t & mask] = item;
+        VALUE.setRelease(tail, t + 1);
+        return true;
+    }
+
+    /* Adds item at the end. Throws IllegalStateException if the ring is full. */
+    public void addLast(T item) {
+        if (!offer(item)) {
+            throw new IllegalStateException("ring is full");
+        }
+    }
+
+    public void addFirst(T item) {
+        throw new UnsupportedOperationException("only the producer adds, at the end");
+    }
+
+    /* Consumer side */
+
+    /* Removes and returns the item at the front, or null if the ring is empty */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long h = (long) VALUE.getOpaque(head);
+        if (h == head.cached) {
+            head.cached = (long) VALUE.getAcquire(tail);
+            if (h == head.cached) {
+                return null;
+            }
+        }
+        int i = (int) h & mask;
+        T item = (T) items[i];
+        items[i] = null;
+        VALUE.setRelease(head, h + 1);
+        return item;
+    }
+
+    public T removeFirst() {
+        return poll();
+    }
+
+    public T removeLast() {
+        throw new UnsupportedOperationException("only the consumer removes, at the front");
+    }
+
+    /* Gets the item at the given index from the front, or null if there is none yet.
+     * Only for the consumer, which is the only thread that sees the front hold still.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        long h = (long) VALUE.getOpaque(head);
+        if (index < 0 || h + index >= (long) VALUE.getAcquire(tail)) {
+            return null;
+        }
+        return (T) items[(int) (h + index) & mask];
+    }
+
+    /* Either side */
+
+    /* The number of items at the moment of the call, which the other thread may change */
+    public int size() {
+        long h = (long) VALUE.getAcquire(head);
+        long t = (long) VALUE.getAcquire(tail);
+        return (int) Math.max(0, Math.min(items.length, t - h));
+    }
+
+    /* Prints the items; like get, only for the consumer */
+    public void printDeque() {
+        int n = size();
+        for (int i = 0; i < n; i++) {
+            System.out.print(get(i) + " ");
+        }
+        System.out.print("\n");
+    }
+}
@@ -0,0 +1,84 @@
+package deque;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SpscRingDequeTest {
+    @Test
+    /* Items come out at the front in the order they went in at the end */
+    public void fifoTest() {
+        SpscRingDeque<Integer> ring = new SpscRingDeque<>(4);
+        assertTrue(ring.isEmpty());
+        assertNull(ring.removeFirst());
+        ring.addLast(1);
+        ring.addLast(2);
+        ring.addLast(3);
+        assertEquals(3, ring.size());
+        assertEquals(Integer.valueOf(1), ring.get(0));
+        assertEquals(Integer.valueOf(3), ring.get(2));
+        assertNull(ring.get(3));
+        assertEquals(Integer.valueOf(1), ring.removeFirst());
+        assertEquals(Integer.valueOf(2), ring.poll());
+        assertEquals(Integer.valueOf(3), ring.removeFirst());
+        assertNull(ring.poll());
+    }
+
+    @Test
+    /* A full ring refuses more items until the consumer makes room */
+    public void boundedTest() {
+        SpscRingDeque<Integer> ring = new SpscRingDeque<>(3);
+        assertEquals(4, ring.capacity());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i));
+        }
+        assertFalse(ring.offer(4));
+        try {
+            ring.addLast(4);
+            fail("addLast on a full ring should throw");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(Integer.valueOf(0), ring.removeFirst());
+        assertTrue(ring.offer(4));
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(Integer.valueOf(i), ring.removeFirst());
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void addFirstTest() {
+        new SpscRingDeque<Integer>(4).addFirst(1);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void removeLastTest() {
+        new SpscRingDeque<Integer>(4).removeLast();
+    }
+
+    @Test(timeout = 20000)
+    /* A producer and a consumer thread hand over a million items through a small ring,
+     * all of which must arrive, in order. Waiting sides yield rather than spin, so
+     * the test also runs on a single core */
+    public void handOverTest() throws InterruptedException {
+        final int n = 1_000_000;
+        SpscRingDeque<Integer> ring = new SpscRingDeque<>(64);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < n; i++) {
+                while (!ring.offer(i)) {
+                    Thread.yield();
+                }
+            }
+        });
+        producer.start();
+        for (int i = 0; i < n; i++) {
+            Integer item;
+            while ((item = ring.poll()) == null) {
+                Thread.yield();
+            }
+            assertEquals(i, item.intValue());
+        }
+        producer.join();
+        assertTrue(ring.isEmpty());
+    }
+}
@@ -0,0 +1,150 @@
+package deque;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/* A Chase-Lev work-stealing deque: the per-worker queue of a fork/join scheduler (see
+ * WorkStealingScheduler).
+ *
+ * One thread owns the deque and uses its end like a stack, with addLast and removeLast;
+ * any number of other threads, the thieves, take from the front with removeFirst. The
+ * owner's operations take no locks and no atomic read-modify-writes, except when it
+ * competes with a thief for the last item; thieves compete with each other through a
+ * compare-and-set on top.
+ *
+ * Items live in a circular array indexed by two ever-growing counters: top, the next item
+ * to steal, and bottom, the next free slot, so the deque holds the items of [top, bottom).
+ * When the array is full the owner copies the items to an array twice the size and
+ * publishes it; thieves still working on the old array read the same items from it, since
+ * the owner never writes to an array again once it has replaced it.
+ * addFirst is not supported, and items may not be null. A slot keeps its item until it is
+ * overwritten.
+ */
+public class WorkStealingDeque<T> implements Deque<T> {
+    private static final int MIN_CAPACITY = 32;
+
+    private static final VarHandle TOP;
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    static {
+        try {
+            TOP = MethodHandles.lookup().findVarHandle(WorkStealingDeque.class, "top", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private volatile long top;
+    private volatile long bottom;
+    private volatile Object[] array = new Object[MIN_CAPACITY];
+
+    /* Owner side */
+
+    /* Pushes item at the end. Only for the owner. */
+    public void addLast(T item) {
+        if (item == null) {
+            throw new NullPointerException("null marks a failed removal");
+        }
+        long b = bottom;
+        long t = top;
+        Object[] a = array;
+        if (b - t >= a.length) {
+            a = grow(a, t, b);
+        }
+        SLOT.setRelease(a, (int) b & (a.length - 1), item);
+        // The volatile write publishes the item to thieves that see the new bottom
+        bottom = b + 1;
+    }
+
+    private Object[] grow(Object[] old, long t, long b) {
+        Object[] a = new Object[old.length << 1];
+        for (long i = t; i < b; i++) {
+            a[(int) i & (a.length - 1)] = old[(int) i & (old.length - 1)];
+        }
+        array = a;
+        return a;
+    }
+
+    /* Pops the item at the end, or returns null if there is none (or a thief took the last
+     * one first). Only for the owner.
+     */
+    @SuppressWarnings("unchecked")
+    public T removeLast() {
+        long b = bottom - 1;
+        Object[] a = array;
+        // Claim slot b before looking at top; both are volatile, so a thief that reads
+        // bottom after this sees the claim, and this read of top sees any steal before it
+        bottom = b;
+        long t = top;
+        if (t > b) {
+            // Empty
+            bottom = b + 1;
+            return null;
+        }
+        T item = (T) SLOT.getAcquire(a, (int) b & (a.length - 1));
+        if (t == b) {
+            // The last item: race the thieves for it
+            if (!TOP.compareAndSet(this, t, t + 1)) {
+                item = null;
+            }
+            bottom = b + 1;
+        }
+        return item;
+    }
+
+    public void addFirst(T item) {
+        throw new UnsupportedOperationException("only the owner adds, at the end");
+    }
+
+    /* Thief side */
+
+    /* Steals the item at the front, or returns null if the deque is empty. Any thread
+     * may call it; a thread that loses a race for an item tries the next one.
+     */
+    @SuppressWarnings("unchecked")
+    public T removeFirst() {
+        while (true) {
+            long t = top;
+            long b = bottom;
+            if (t >= b) {
+                return null;
+            }
+            Object[] a = array;
+            T item = (T) SLOT.getAcquire(a, (int) t & (a.length - 1));
+            if (TOP.compareAndSet(this, t, t + 1)) {
+                return item;
+            }
+        }
+    }
+
+    /* Either side */
+
+    /* The number of items at the moment of the call */
+    public int size() {
+        long t = top;
+        long b = bottom;
+        return (int) Math.max(0, b - t);
+    }
+
+    /* Gets the item at the given index from the front, or null if there is none. Only
+     * meaningful for the owner while no thief is running.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        long t = top;
+        Object[] a = array;
+        if (index < 0 || t + index >= bottom) {
+            return null;
+        }
+        return (T) SLOT.getAcquire(a, (int) (t + index) & (a.length - 1));
+    }
+
+    /* Prints the items; like get, only meaningful while no thief is running */
+    public void printDeque() {
+        int n = size();
+        for (int i = 0; i < n; i++) {
+            System.out.print(get(i) + " ");
+        }
+        System.out.print("\n");
+    }
+}
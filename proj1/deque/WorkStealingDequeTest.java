@@ -0,0 +1,116 @@
+package deque;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.*;
+
+public class WorkStealingDequeTest {
+    @Test
+    /* The owner sees a stack, thieves see a queue */
+    public void ownerAndThiefOrderTest() {
+        WorkStealingDeque<Integer> d = new WorkStealingDeque<>();
+        assertTrue(d.isEmpty());
+        assertNull(d.removeLast());
+        assertNull(d.removeFirst());
+        for (int i = 0; i < 5; i++) {
+            d.addLast(i);
+        }
+        assertEquals(5, d.size());
+        assertEquals(Integer.valueOf(0), d.get(0));
+        assertEquals(Integer.valueOf(4), d.removeLast());
+        assertEquals(Integer.valueOf(0), d.removeFirst());
+        assertEquals(Integer.valueOf(3), d.removeLast());
+        assertEquals(Integer.valueOf(1), d.removeFirst());
+        assertEquals(Integer.valueOf(2), d.removeLast());
+        assertNull(d.removeLast());
+        assertNull(d.removeFirst());
+    }
+
+    @Test
+    /* Growing keeps every item, in order, wherever top and bottom are in the ring */
+    public void growTest() {
+        WorkStealingDeque<Integer> d = new WorkStealingDeque<>();
+        for (int i = 0; i < 20; i++) {
+            d.addLast(-1);
+            d.removeFirst();
+        }
+        for (int i = 0; i < 1000; i++) {
+            d.addLast(i);
+        }
+        for (int i = 0; i < 500; i++) {
+            assertEquals(Integer.valueOf(i), d.removeFirst());
+        }
+        for (int i = 999; i >= 500; i--) {
+            assertEquals(Integer.valueOf(i), d.removeLast());
+        }
+        assertTrue(d.isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void addFirstTest() {
+        new WorkStealingDeque<Integer>().addFirst(1);
+    }
+
+    @Test(timeout = 60000)
+    /* The owner pushes and pops while thieves steal, through many growths: every item must
+     * be taken exactly once. Waiting threads yield, so this also runs on a single core.
+     */
+    public void stealStressTest() throws InterruptedException {
+        final int n = 200_000;
+        final int thieves = 3;
+        WorkStealingDeque<Integer> d = new WorkStealingDeque<>();
+        AtomicIntegerArray taken = new AtomicIntegerArray(n);
+        AtomicBoolean ownerDone = new AtomicBoolean();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int k = 0; k < thieves; k++) {
+            threads.add(new Thread(() -> {
+                while (true) {
+                    Integer item = d.removeFirst();
+                    if (item != null) {
+                        taken.incrementAndGet(item);
+                    } else if (ownerDone.get() && d.isEmpty()) {
+                        return;
+                    } else {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+
+        // The owner pushes bursts and pops part of each back, as a fork/join worker would
+        int next = 0;
+        while (next < n) {
+            int burst = Math.min(1 + next % 97, n - next);
+            for (int i = 0; i < burst; i++) {
+                d.addLast(next++);
+            }
+            for (int i = 0; i < burst / 2; i++) {
+                Integer item = d.removeLast();
+                if (item != null) {
+                    taken.incrementAndGet(item);
+                }
+            }
+        }
+        Integer item;
+        while ((item = d.removeLast()) != null) {
+            taken.incrementAndGet(item);
+        }
+        ownerDone.set(true);
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        for (int i = 0; i < n; i++) {
+            assertEquals("item " + i, 1, taken.get(i));
+        }
+    }
+}
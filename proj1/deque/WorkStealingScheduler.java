@@ -0,0 +1,200 @@
+package deque;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/* A minimal fork/join scheduler over WorkStealingDeques.
+ *
+ * Each worker thread owns a WorkStealingDeque of tasks. A task running on a worker forks
+ * subtasks onto the end of that worker's deque and, when it needs their results, joins
+ * them: while a subtask is not done the joining worker runs other tasks, its own newest
+ * ones first and else ones stolen from the front of another worker's deque, rather than
+ * blocking. Idle workers steal the same way, so the oldest, and with recursive splitting
+ * the largest, pieces of work move to idle cores while each worker keeps the small ones.
+ * Tasks from outside the pool come in through a shared submission queue.
+ *
+ * Run main for a demo: a recursive workload on one worker and then on all cores.
+ */
+public class WorkStealingScheduler {
+
+    /* A piece of work that may fork subtasks and join them */
+    public abstract static class Task<V> {
+        private volatile boolean done;
+        private V result;
+
+        protected abstract V compute();
+
+        /* Schedules this task on the deque of the current worker and returns it */
+        public final Task<V> fork() {
+            currentWorker().deque.addLast(this);
+            return this;
+        }
+
+        /* Returns the result of this task, running other tasks until it is done */
+        public final V join() {
+            Worker w = currentWorker();
+            while (!done) {
+                Task<?> next = w.deque.removeLast();
+                if (next == null) {
+                    next = w.steal();
+                }
+                if (next != null) {
+                    next.run();
+                } else {
+                    Thread.yield();
+                }
+            }
+            return result;
+        }
+
+        final void run() {
+            result = compute();
+            done = true;
+        }
+
+        public final boolean isDone() {
+            return done;
+        }
+    }
+
+    private class Worker extends Thread {
+        final WorkStealingDeque<Task<?>> deque = new WorkStealingDeque<>();
+
+        Worker(int index) {
+            super("worker-" + index);
+            setDaemon(true);
+        }
+
+        /* Returns a task from the submission queue or from another worker, or null */
+        Task<?> steal() {
+            Task<?> task = submissions.poll();
+            if (task != null || workers.length == 1) {
+                return task;
+            }
+            int start = ThreadLocalRandom.current().nextInt(workers.length);
+            for (int i = 0; i < workers.length; i++) {
+                Worker victim = workers[(start + i) % workers.length];
+                if (victim != this) {
+                    task = victim.deque.removeFirst();
+                    if (task != null) {
+                        return task;
+                    }
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void run() {
+            while (!shutdown) {
+                Task<?> task = deque.removeLast();
+                if (task == null) {
+                    task = steal();
+                }
+                if (task != null) {
+                    task.run();
+                } else {
+                    Thread.yield();
+                }
+            }
+        }
+    }
+
+    private final Worker[] workers;
+    private final ConcurrentLinkedQueue<Task<?>> submissions = new ConcurrentLinkedQueue<>();
+    private volatile boolean shutdown;
+
+    /* Starts a scheduler with the given number of worker threads */
+    public WorkStealingScheduler(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        workers = new Worker[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            workers[i] = new Worker(i);
+        }
+        for (Worker w : workers) {
+            w.start();
+        }
+    }
+
+    private static Worker currentWorker() {
+        Thread t = Thread.currentThread();
+        if (!(t instanceof Worker)) {
+            throw new IllegalStateException("fork and join only work inside a scheduler");
+        }
+        return (Worker) t;
+    }
+
+    /* Runs task on the workers and returns its result. Called from outside the pool. */
+    public <V> V invoke(Task<V> task) {
+        submissions.add(task);
+        while (!task.isDone()) {
+            Thread.yield();
+        }
+        // The volatile read of done makes the result visible
+        return task.result;
+    }
+
+    /* Stops the workers once they are idle */
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    /* Demo */
+
+    /* Counts the primes below hi from lo by splitting the range in halves */
+    static class CountPrimes extends Task<Integer> {
+        private static final int THRESHOLD = 2000;
+        private final int lo;
+        private final int hi;
+
+        CountPrimes(int lo, int hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (hi - lo <= THRESHOLD) {
+                int count = 0;
+                for (int n = lo; n < hi; n++) {
+                    if (isPrime(n)) {
+                        count++;
+                    }
+                }
+                return count;
+            }
+            int mid = (lo + hi) >>> 1;
+            Task<Integer> left = new CountPrimes(lo, mid).fork();
+            int right = new CountPrimes(mid, hi).compute();
+            return left.join() + right;
+        }
+
+        private static boolean isPrime(int n) {
+            if (n < 2) {
+                return false;
+            }
+            for (int d = 2; (long) d * d <= n; d++) {
+                if (n % d == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    public static void main(String[] args) {
+        int limit = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int parallelism : new int[] {1, cores}) {
+            WorkStealingScheduler scheduler = new WorkStealingScheduler(parallelism);
+            long start = System.nanoTime();
+            int primes = scheduler.invoke(new CountPrimes(0, limit));
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            scheduler.shutdown();
+            System.out.printf("%d primes below %d, %d worker(s): %d ms%n",
+                    primes, limit, parallelism, millis);
+        }
+    }
+}
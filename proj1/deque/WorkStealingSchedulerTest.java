@@ -0,0 +1,57 @@
+package deque;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WorkStealingSchedulerTest {
+    /* Sums the integers in [lo, hi) by splitting the range in halves */
+    static class Sum extends WorkStealingScheduler.Task<Long> {
+        private final long lo;
+        private final long hi;
+
+        Sum(long lo, long hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected Long compute() {
+            if (hi - lo <= 100) {
+                long s = 0;
+                for (long i = lo; i < hi; i++) {
+                    s += i;
+                }
+                return s;
+            }
+            long mid = (lo + hi) >>> 1;
+            WorkStealingScheduler.Task<Long> left = new Sum(lo, mid).fork();
+            long right = new Sum(mid, hi).compute();
+            return left.join() + right;
+        }
+    }
+
+    @Test(timeout = 60000)
+    /* A recursive workload spread over more workers than there are cores */
+    public void recursiveSumTest() {
+        WorkStealingScheduler scheduler = new WorkStealingScheduler(4);
+        long n = 1_000_000;
+        assertEquals(Long.valueOf(n * (n - 1) / 2), scheduler.invoke(new Sum(0, n)));
+        assertEquals(Long.valueOf(4950), scheduler.invoke(new Sum(0, 100)));
+        scheduler.shutdown();
+    }
+
+    @Test(timeout = 60000)
+    public void demoTest() {
+        WorkStealingScheduler scheduler = new WorkStealingScheduler(3);
+        assertEquals(Integer.valueOf(1229),
+                scheduler.invoke(new WorkStealingScheduler.CountPrimes(0, 10_000)));
+        scheduler.shutdown();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    /* fork needs a worker's deque to go on */
+    public void forkOutsideTest() {
+        new Sum(0, 10).fork();
+    }
+}
@@ -1,7 +1,7 @@
 package gh2;
 
-import deque.ArrayDeque;
-import deque.Deque;
+import deque.DoubleArrayDeque;
+import deque.DoubleDeque;
 
 //Note: This file will not compile until you complete the Deque implementations
 public class GuitarString {
@@ -11,17 +11,18 @@ public class GuitarString {
     private static final int SR = 44100;      // Sampling Rate
     private static final double DECAY = .996; // energy decay factor
 
-    /* Buffer for storing sound data. */
-    private Deque<Double> buffer;
+    /* Buffer for storing sound data. Its size never changes, and it only holds
+     * primitive doubles, so tic() and pluck() allocate nothing. */
+    private DoubleDeque buffer;
 
     /* Create a guitar string of the given frequency.  */
     public GuitarString(double frequency) {
 
         int capacity = (int) Math.round(SR / frequency);
 
-        buffer = new ArrayDeque<>();
+        buffer = new DoubleArrayDeque(capacity);
         for (int i = 0; i < capacity; i++) {
-            buffer.addLast(0.0);
+            buffer.addLastDouble(0.0);
         }
     }
 
@@ -35,10 +36,10 @@ public class GuitarString {
 
         int size = buffer.size();
         for (int i = 0; i < size; i++) {
-            buffer.removeFirst();
+            buffer.removeFirstDouble();
             // Add white noise between -0.5 and 0.5
             double r = Math.random() - 0.5;
-            buffer.addLast(r);
+            buffer.addLastDouble(r);
         }
     }
 
@@ -47,11 +48,11 @@ public class GuitarString {
      */
     public void tic() {
 
-        double first = buffer.removeFirst();
-        double second = buffer.get(0);
+        double first = buffer.removeFirstDouble();
+        double second = buffer.getDouble(0);
 
         double newDouble = (first + second) * 0.5 * DECAY;
-        buffer.addLast(newDouble);
+        buffer.addLastDouble(newDouble);
 
     }
 
@@ -61,6 +62,6 @@ public class GuitarString {
         if (buffer.isEmpty()) {
             return 0;
         }
-        return buffer.get(0);
+        return buffer.getDouble(0);
     }
 }
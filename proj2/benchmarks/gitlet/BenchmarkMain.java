@@ -0,0 +1,86 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** Runs the gitlet benchmarks.
+ *
+ *  Usage: java -jar target/benchmarks.jar [JMH OPTIONS]
+ *
+ *  Takes the usual JMH options, e.g. "-p commits=100,1000 -p files=10000"
+ *  to change the size of the synthetic repositories (see CommandBenchmark
+ *  for the parameters) or a regexp to pick benchmarks.  Unless told
+ *  otherwise with -rf and -rff, results are written as JSON to
+ *  gitlet-jmh.json, to be compared across storage format changes.
+ *
+ *  Every fork is started with user.dir set to a directory in a fresh
+ *  scratch directory (see SyntheticRepo), deleted once the run is over.
+ *
+ *  @author Mingqian Yu
+ */
+public class BenchmarkMain {
+
+    /** Default file the results are written to. */
+    static final String RESULTS = "gitlet-jmh.json";
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        CommandLineOptions cli;
+        try {
+            cli = new CommandLineOptions(args);
+        } catch (CommandLineOptionException excp) {
+            System.err.println(excp.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (cli.getForkCount().orElse(1) == 0) {
+            System.err.println("The gitlet benchmarks must run forked (-f 1 or more).");
+            System.exit(1);
+        }
+
+        File scratch = Files.createTempDirectory("gitlet-bench").toFile();
+        try {
+            Files.createFile(new File(scratch, SyntheticRepo.MARKER).toPath());
+            File work = new File(scratch, "work");
+            work.mkdir();
+            List<String> jvmArgs = new ArrayList<>(cli.getJvmArgsAppend().orElse(List.of()));
+            jvmArgs.add("-Duser.dir=" + work.getAbsolutePath());
+
+            ChainedOptionsBuilder options = new OptionsBuilder().parent(cli)
+                    .jvmArgsAppend(jvmArgs.toArray(new String[0]));
+            if (cli.getIncludes().isEmpty()) {
+                options.include(CommandBenchmark.class.getName());
+            }
+            if (!cli.getResultFormat().hasValue()) {
+                options.resultFormat(ResultFormatType.JSON);
+            }
+            if (!cli.getResult().hasValue()) {
+                options.result(RESULTS);
+            }
+            new Runner(options.build()).run();
+        } finally {
+            delete(scratch);
+        }
+    }
+
+    /** Delete FILE and, if it is a directory, everything in it. */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
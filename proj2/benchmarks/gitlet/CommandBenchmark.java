@@ -0,0 +1,168 @@
+package gitlet;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of the gitlet commands, run through the Repository API on a
+ *  synthetic repository (see SyntheticRepo) exactly as Main runs them:
+ *  each command loads the repository, runs and saves it.
+ *
+ *  Every fork builds its own repository from the parameters, so the
+ *  commands that change the repository (add, commit, checkout, merge) only
+ *  ever affect the benchmark that runs them.  Whatever the commands print
+ *  is discarded.
+ *
+ *  @author Mingqian Yu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandBenchmark {
+
+    @Param({"200"})
+    public int commits;
+
+    @Param({"1000"})
+    public int files;
+
+    @Param({"1024"})
+    public int fileSize;
+
+    @Param({"4"})
+    public int branches;
+
+    SyntheticRepo repo;
+
+    @Setup(Level.Trial)
+    public void build() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        repo = new SyntheticRepo(commits, files, fileSize, branches);
+        repo.build();
+    }
+
+    /** A file edited before each invocation, ready to be added. */
+    @State(Scope.Benchmark)
+    public static class Edited {
+        String path;
+        private int next;
+
+        @Setup(Level.Invocation)
+        public void edit(CommandBenchmark bench) {
+            next = (next + 1) % bench.files;
+            path = bench.repo.edit(next);
+        }
+    }
+
+    /** A file edited and staged before each invocation, ready to be committed. */
+    @State(Scope.Benchmark)
+    public static class Staged {
+        private int next;
+
+        @Setup(Level.Invocation)
+        public void stage(CommandBenchmark bench) {
+            next = (next + 1) % bench.files;
+            String path = bench.repo.edit(next);
+            SyntheticRepo.run(repo -> repo.add(path));
+        }
+    }
+
+    /** A branch forked from master before each invocation, with one commit
+     *  of its own, while master got another commit: a merge that is neither
+     *  a fast-forward nor a conflict. */
+    @State(Scope.Benchmark)
+    public static class Diverged {
+        String branch;
+        private int count;
+
+        @Setup(Level.Invocation)
+        public void diverge(CommandBenchmark bench) {
+            count += 1;
+            branch = "side" + count;
+            int files = bench.files;
+            SyntheticRepo.run(repo -> repo.branch(branch));
+            SyntheticRepo.run(repo -> repo.checkout(true, null, null, branch));
+            String theirs = bench.repo.edit((2 * count) % files);
+            SyntheticRepo.run(repo -> {
+                repo.add(theirs);
+                repo.commit("side " + count, "");
+            });
+            SyntheticRepo.run(repo -> repo.checkout(true, null, null, "master"));
+            String ours = bench.repo.edit((2 * count + 1) % files);
+            SyntheticRepo.run(repo -> {
+                repo.add(ours);
+                repo.commit("master " + count, "");
+            });
+        }
+    }
+
+    @Benchmark
+    public void status() {
+        SyntheticRepo.run(Repository::status);
+    }
+
+    @Benchmark
+    public void log() {
+        SyntheticRepo.run(Repository::log);
+    }
+
+    @Benchmark
+    public void find() {
+        SyntheticRepo.run(repo -> repo.find("commit 1"));
+    }
+
+    @Benchmark
+    public void add(Edited edited) {
+        SyntheticRepo.run(repo -> repo.add(edited.path));
+    }
+
+    @Benchmark
+    public void commit(Staged staged) {
+        SyntheticRepo.run(repo -> repo.commit("benchmark", ""));
+    }
+
+    /** Check out branch b1 and master in turn. */
+    @Benchmark
+    public void checkoutBranch(Toggle toggle) {
+        String target = toggle.flip() ? SyntheticRepo.branch(Math.min(1, branches - 1)) : "master";
+        SyntheticRepo.run(repo -> {
+            try {
+                repo.checkout(true, null, null, target);
+            } catch (GitletException excp) {
+                // Only when there is a single branch: "No need to checkout the current branch."
+            }
+        });
+    }
+
+    /** Which branch checkoutBranch goes to next. */
+    @State(Scope.Benchmark)
+    public static class Toggle {
+        private boolean away;
+
+        boolean flip() {
+            away = !away;
+            return away;
+        }
+    }
+
+    @Benchmark
+    public void merge(Diverged diverged) {
+        SyntheticRepo.run(repo -> repo.merge(diverged.branch));
+    }
+}
@@ -0,0 +1,153 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static gitlet.Constants.*;
+
+/** Synthetic repositories for the benchmarks (see CommandBenchmark).
+ *
+ *  A repository is described by its number of commits, its number of files,
+ *  the size of each file and its branch fan-out.  It is built in the
+ *  working directory, starting with one commit adding every file; each
+ *  further commit edits a few lines of a few files on one of the branches,
+ *  going round the branches in turn.  Files are spread over directories
+ *  of FILES_PER_DIR files each, and everything is drawn from a fixed seed,
+ *  so the same parameters always build the same repository.
+ *
+ *  Gitlet works on the directory named by the user.dir property (see
+ *  Constants), which cannot change once the JVM has started, so every
+ *  benchmark fork is started in a scratch directory by BenchmarkMain.
+ *  Only a directory whose parent holds the MARKER file is ever wiped.
+ *
+ *  @author Mingqian Yu
+ */
+class SyntheticRepo {
+
+    /** File marking the parent of a working directory as benchmark scratch
+     *  space.  It sits outside the working directory, where gitlet would
+     *  see it as an untracked file. */
+    static final String MARKER = ".gitlet-bench";
+
+    /** Number of files in each directory. */
+    static final int FILES_PER_DIR = 16;
+    /** Number of files edited by each commit. */
+    static final int FILES_PER_COMMIT = 3;
+    /** Length of a line of a file, newline included. */
+    private static final int LINE = 64;
+
+    final int commits;
+    final int files;
+    final int fileSize;
+    final int branches;
+    private final Random random = new Random(61);
+
+    SyntheticRepo(int commits, int files, int fileSize, int branches) {
+        this.commits = commits;
+        this.files = files;
+        this.fileSize = fileSize;
+        this.branches = Math.max(1, branches);
+    }
+
+    /** Return the name of branch K, branch 0 being master. */
+    static String branch(int k) {
+        return k == 0 ? "master" : "b" + k;
+    }
+
+    /** Return the path of file F. */
+    static String path(int f) {
+        return "d" + (f / FILES_PER_DIR) + "/f" + f + ".txt";
+    }
+
+    /** Wipe the working directory and build the repository in it, leaving
+     *  master checked out. */
+    void build() {
+        File cwd = new File(CWD);
+        if (!new File(cwd.getParentFile(), MARKER).isFile()) {
+            throw new IllegalStateException(cwd + " is not a benchmark scratch directory");
+        }
+        wipe(cwd);
+
+        new Repository().init();
+        for (int f = 0; f < files; f++) {
+            File file = Utils.join(CWD, path(f));
+            file.getParentFile().mkdirs();
+            Utils.writeContents(file, text(fileSize));
+        }
+        run(repo -> {
+            for (int f = 0; f < files; f++) {
+                repo.add(path(f));
+            }
+            repo.commit("add " + files + " files", "");
+        });
+        for (int k = 1; k < branches; k++) {
+            int b = k;
+            run(repo -> repo.branch(branch(b)));
+        }
+
+        String current = branch(0);
+        for (int c = 1; c < commits; c++) {
+            String target = branch(c % branches);
+            if (!target.equals(current)) {
+                run(repo -> repo.checkout(true, null, null, target));
+                current = target;
+            }
+            commit("commit " + c);
+        }
+        if (!current.equals(branch(0))) {
+            run(repo -> repo.checkout(true, null, null, branch(0)));
+        }
+    }
+
+    /** Edit FILES_PER_COMMIT random files and commit them with MESSAGE. */
+    void commit(String message) {
+        run(repo -> {
+            for (int i = 0; i < FILES_PER_COMMIT; i++) {
+                repo.add(edit(random.nextInt(files)));
+            }
+            repo.commit(message, "");
+        });
+    }
+
+    /** Replace a random line of file F and return its path. */
+    String edit(int f) {
+        String path = path(f);
+        File file = Utils.join(CWD, path);
+        byte[] contents = Utils.readContents(file);
+        int lines = Math.max(1, contents.length / LINE);
+        int at = random.nextInt(lines) * LINE;
+        byte[] line = text(LINE).getBytes();
+        System.arraycopy(line, 0, contents, at, Math.min(LINE, contents.length - at));
+        Utils.writeContents(file, (Object) contents);
+        return path;
+    }
+
+    /** Return SIZE bytes of random lines of text. */
+    private String text(int size) {
+        StringBuilder text = new StringBuilder(size);
+        for (int i = 1; i <= size; i++) {
+            text.append(i % LINE == 0 ? '\n' : (char) ('a' + random.nextInt(26)));
+        }
+        return text.toString();
+    }
+
+    /** Run ACTION on the repository as one command would: load it, act, save it. */
+    static void run(Consumer<Repository> action) {
+        Repository repo = Repository.load();
+        action.accept(repo);
+        Repository.save(repo);
+    }
+
+    /** Delete everything in DIR. */
+    private static void wipe(File dir) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File f : children) {
+            wipe(f);
+            f.delete();
+        }
+    }
+}
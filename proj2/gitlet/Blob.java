@@ -0,0 +1,174 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static gitlet.Constants.*;
+
+/** Streaming access to blobs, the stored contents of tracked files.
+ *
+ *  Blobs are handled as bytes and copied through fixed-size buffers, so a
+ *  file is never held on the heap as a whole (let alone as a String) just
+ *  to be hashed, stored or checked out.  The id of a blob is the SHA-1 of
+ *  its raw bytes, computed while the bytes are being copied.
+ *
+ *  A loose blob file starts with one format byte: RAW, followed by the
+ *  contents as they are, or DEFLATED, followed by the zlib-compressed
+ *  contents.  New blobs are compressed when BLOB_COMPRESSION is set.
+ *  Packed blobs (see Pack) hold the plain contents.
+ *
+ *  @author Mingqian Yu
+ */
+class Blob {
+
+    /** Contents of recently read blobs, keyed by id. */
+    static final ObjectCache<byte[]> CACHE = new ObjectCache<>("blob", 32 << 20, b -> b.length);
+
+    /** Format bytes of loose blob files. */
+    private static final int RAW = 0;
+    private static final int DEFLATED = 1;
+
+    /** Store the contents of FILE as a blob, if not already stored, and
+     *  return its id. */
+    static String store(File file) {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            return store(in);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Store CONTENTS as a blob, if not already stored, and return its id. */
+    static String store(byte[] contents) {
+        return store(new ByteArrayInputStream(contents));
+    }
+
+    /** Store everything IN has to offer as a blob, and return its id.  The
+     *  contents are hashed while they are copied to a temporary file, which
+     *  then becomes the blob, or is dropped if the blob already exists. */
+    private static String store(InputStream in) {
+        BLOBS_DIR.mkdir();
+        File tmp = null;
+        try {
+            tmp = File.createTempFile("blob", ".tmp", BLOBS_DIR);
+            DigestInputStream digesting = new DigestInputStream(in, ObjectId.digest());
+            try (OutputStream out = Files.newOutputStream(tmp.toPath())) {
+                if (BLOB_COMPRESSION) {
+                    out.write(DEFLATED);
+                    DeflaterOutputStream deflating = new DeflaterOutputStream(
+                            out, new Deflater(Deflater.BEST_SPEED));
+                    digesting.transferTo(deflating);
+                    deflating.finish();
+                } else {
+                    out.write(RAW);
+                    digesting.transferTo(out);
+                }
+            }
+            String id = ObjectId.toHex(digesting.getMessageDigest().digest());
+            if (ObjectStore.contains(BLOBS_DIR, id)) {
+                tmp.delete();
+            } else {
+                File dest = ObjectStore.file(BLOBS_DIR, id);
+                dest.getParentFile().mkdir();
+                Files.move(tmp.toPath(), dest.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                Journal.of(BLOBS_DIR.getParentFile()).written(dest);
+            }
+            return id;
+        } catch (IOException excp) {
+            if (tmp != null) {
+                tmp.delete();
+            }
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the id FILE would have as a blob, without storing it. */
+    static String hash(File file) {
+        try (DigestInputStream in = new DigestInputStream(
+                Files.newInputStream(file.toPath()), ObjectId.digest())) {
+            in.transferTo(OutputStream.nullOutputStream());
+            return ObjectId.toHex(in.getMessageDigest().digest());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return a stream over the contents of the blob ID. */
+    static InputStream open(String id) {
+        return open(BLOBS_DIR, id);
+    }
+
+    /** Return a stream over the contents of the blob ID stored in BLOBSDIR,
+     *  the blob directory of this or another repository. */
+    static InputStream open(File blobsDir, String id) {
+        File loose = ObjectStore.file(blobsDir, id);
+        if (!loose.isFile()) {
+            return new ByteArrayInputStream(ObjectStore.read(blobsDir, id));
+        }
+        try {
+            InputStream in = Files.newInputStream(loose.toPath());
+            int format = in.read();
+            return format == DEFLATED ? new InflaterInputStream(in) : in;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the contents of the blob ID.  Only meant for blobs that have to
+     *  be worked on as a whole, such as the two sides of a merge conflict.
+     *  The array may be shared through CACHE and must not be modified. */
+    static byte[] read(String id) {
+        byte[] contents = CACHE.get(id);
+        if (contents != null) {
+            return contents;
+        }
+        try (InputStream in = open(id)) {
+            contents = in.readAllBytes();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        CACHE.put(id, contents);
+        return contents;
+    }
+
+    /** Overwrite FILE with the contents of the blob ID.  Uncompressed loose
+     *  blobs are copied channel to channel, without passing through the heap. */
+    static void checkout(String id, File file) {
+        File loose = ObjectStore.file(BLOBS_DIR, id);
+        try {
+            if (loose.isFile()) {
+                try (FileChannel in = FileChannel.open(loose.toPath());
+                     FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                             StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    ByteBuffer format = ByteBuffer.allocate(1);
+                    in.read(format);
+                    if (format.get(0) == RAW) {
+                        long size = in.size() - 1;
+                        for (long done = 0; done < size; ) {
+                            done += in.transferTo(1 + done, size - done, out);
+                        }
+                        return;
+                    }
+                }
+            }
+            try (InputStream in = open(id);
+                 OutputStream out = Files.newOutputStream(file.toPath())) {
+                in.transferTo(out);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/** Thin client for a gitlet server (see Daemon).
+ *
+ *  Usage: java gitlet.Client ARGS, with the same ARGS as gitlet.Main.
+ *  If a server is running for the repository in the current directory the
+ *  command is sent to it and its output printed; otherwise the command is
+ *  run in this process by Main, so the client can always stand in for Main.
+ *
+ *  This class only touches Main when there is no server, so a client call
+ *  loads a handful of JDK classes and nothing of gitlet.
+ *
+ *  @author Mingqian Yu
+ */
+public class Client {
+
+    public static void main(String[] args) {
+        File socket = new File(System.getProperty("user.dir"),
+                ".gitlet" + File.separator + "daemon.sock");
+        SocketChannel server = socket.exists() ? connect(socket) : null;
+        if (server == null) {
+            Main.main(args);
+            return;
+        }
+        try (server) {
+            for (String arg : args) {
+                byte[] bytes = (arg + "\0").getBytes(StandardCharsets.UTF_8);
+                ByteBuffer buf = ByteBuffer.wrap(bytes);
+                while (buf.hasRemaining()) {
+                    server.write(buf);
+                }
+            }
+            server.shutdownOutput();
+            Channels.newInputStream(server).transferTo(System.out);
+            System.out.flush();
+        } catch (IOException excp) {
+            System.err.println("Lost the connection to the gitlet server: " + excp.getMessage());
+        }
+    }
+
+    /** Return a connection to the server listening on SOCKET, or null if
+     *  none is. */
+    static SocketChannel connect(File socket) {
+        try {
+            return SocketChannel.open(UnixDomainSocketAddress.of(socket.toPath()));
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** The binary encoding gitlet uses for its commits and repository state.
+ *
+ *  Every encoded object starts with a 4-byte magic naming its type and a
+ *  version byte, so formats can evolve without being mistaken for one
+ *  another.  After that come fields written with the primitives below:
+ *
+ *    varint   unsigned LEB128, used for lengths and counts
+ *    string   varint byte length followed by the UTF-8 bytes
+ *    bytes    varint length followed by the bytes themselves
+ *    id       a presence byte, then the raw 20 bytes of a SHA-1 id
+ *
+ *  Decoding walks a byte array directly, with no reflection and no class
+ *  descriptors, which is what made Java serialization slow to start up.
+ *
+ *  @author Mingqian Yu
+ */
+class Codec {
+
+    /** Builds an encoded object. */
+    static class Writer {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+
+        /** Start an object of type MAGIC, format version VERSION. */
+        Writer(String magic, int version) {
+            out.writeBytes(magic.getBytes(StandardCharsets.US_ASCII));
+            out.write(version);
+        }
+
+        /** Start a bare record, with no magic or version, to be appended to
+         *  a file that has its own header. */
+        Writer() {
+        }
+
+        Writer writeByte(int b) {
+            out.write(b);
+            return this;
+        }
+
+        Writer writeVarint(long value) {
+            while ((value & ~0x7fL) != 0) {
+                out.write((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+            return this;
+        }
+
+        Writer writeString(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            out.writeBytes(bytes);
+            return this;
+        }
+
+        Writer writeBytes(byte[] bytes) {
+            writeVarint(bytes.length);
+            out.writeBytes(bytes);
+            return this;
+        }
+
+        /** Write the hex SHA-1 id ID, which may be null. */
+        Writer writeId(String id) {
+            if (id == null) {
+                out.write(0);
+            } else {
+                out.write(1);
+                out.writeBytes(ObjectId.toRaw(id));
+            }
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+
+    /** Decodes an object produced by a Writer. */
+    static class Reader {
+        private final byte[] data;
+        private final int version;
+        private int pos;
+
+        /** Start reading DATA, which must hold an object of type MAGIC. */
+        Reader(byte[] data, String magic) {
+            this.data = data;
+            byte[] expected = magic.getBytes(StandardCharsets.US_ASCII);
+            if (data.length <= expected.length
+                    || !Arrays.equals(data, 0, expected.length, expected, 0, expected.length)) {
+                throw new IllegalArgumentException("not a gitlet " + magic + " object");
+            }
+            pos = expected.length;
+            version = data[pos++] & 0xff;
+        }
+
+        /** Return the format version the object was written with. */
+        int version() {
+            return version;
+        }
+
+        /** Return true iff there are bytes left to read. */
+        boolean hasMore() {
+            return pos < data.length;
+        }
+
+        /** Return the number of bytes read so far, including the header.  It
+         *  exceeds the length of the data if a read ran past its end. */
+        int position() {
+            return pos;
+        }
+
+        /** Skip the next N bytes. */
+        void skip(int n) {
+            pos += n;
+        }
+
+        int readByte() {
+            return data[pos++] & 0xff;
+        }
+
+        long readVarint() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                value |= (long) (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        String readString() {
+            int length = (int) readVarint();
+            String s = new String(data, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return s;
+        }
+
+        byte[] readBytes() {
+            int length = (int) readVarint();
+            byte[] bytes = Arrays.copyOfRange(data, pos, pos + length);
+            pos += length;
+            return bytes;
+        }
+
+        /** Read an id written by Writer.writeId, possibly null. */
+        String readId() {
+            if (data[pos++] == 0) {
+                return null;
+            }
+            byte[] raw = Arrays.copyOfRange(data, pos, pos + 20);
+            pos += 20;
+            return ObjectId.toHex(raw);
+        }
+    }
+}
@@ -1,9 +1,8 @@
 package gitlet;
 
 import java.io.File;
-import java.io.Serial;
-import java.io.Serializable;
 import java.text.DateFormat;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import static gitlet.Utils.*;
 import static gitlet.Constants.*;
@@ -11,36 +10,52 @@ import static gitlet.Constants.*;
 import java.util.*;
 
 /** Represents a gitlet commit object.
- *  The commit object is Java serializable for the goal of persistence.
- *  Each commit can have
+ *  The commit object is persisted with a compact binary encoding (see Codec
+ *  and encode()) rather than Java serialization.
+ *  Each commit can have one parent, or two for a merge commit, and none for
+ *  the initial commit.
+ *
+ *  Commits are immutable, and their id is the SHA-1 of their encoding, so
+ *  it covers the tree, the parents, the message and the time.  Which
+ *  branches a commit is on is not part of it: that is what the branch
+ *  refs and their reflogs record (see Refs).
  *
  *  @author mingqian yu
  */
-public class Commit implements Serializable {
+public class Commit {
     /**
      *
      * List all instance variables of the Commit class here with a useful
      * comment above them describing what that variable represents and how that
      * variable is used. We've provided one example for `message`.
      */
-    @Serial
-    private static final long serialVersionUID = -4625650758405441611L;
+    /** Decoded commits, keyed by id. The weight is a rough estimate of the heap taken. */
+    static final ObjectCache<Commit> CACHE = new ObjectCache<>("commit", 4 << 20,
+            c -> 256 + 96L * (c.tree == null ? 0 : c.tree.size()));
+
+    /** Type tag and format version of encoded commits. */
+    private static final String MAGIC = "GCMT";
+    private static final int VERSION = 3;
     /** The message of this Commit. */
     private final String message;
     /** The timestamp of this Commit. */
     private String timestamp;
+    /** Id of the root tree (see Tree) of the working directory at the time of this commit. */
+    private String treeID;
     /**
-     * Tree of the current working directory at the time of this commit
-     * Under the assumption that the depth of the tree is 1,
-     * it's reasonable to use a map data structure to represent the tree.
+     * The files of the root tree, flattened on first use.
      *
-     * Key = file name
+     * Key = file path, relative to the working directory
      * Value = file blob SHA1
      */
-    private final Map<String, String> tree;
+    private Map<String, String> tree;
+
+    /** Ids of the parent commits: the commit this one was made on, then
+     *  for a merge commit the head of the branch merged in. */
+    private final List<String> parents;
 
-    /* Maps branch name to parent commit sha1 */
-    private Map<String, String> parents = new HashMap<>();
+    /** Id of this commit, computed on first use. */
+    private String id;
 
     /**
      * Create initial commit object
@@ -48,56 +63,101 @@ public class Commit implements Serializable {
     public Commit() {
         this.message = INITIAL_COMMIT_MSG;
         setTimestamp(true);
-        this.tree = new HashMap<>();
-        parents.put("master", null);
+        this.treeID = Tree.update(null, Map.of());
+        this.parents = List.of();
     }
 
-    public Commit(String message, Map<String, String> tree, String branch, String parent) {
+    public Commit(String message, String treeID, List<String> parents) {
         this.message = message;
         setTimestamp(false);
-        this.tree = tree;
-        assert branch != null;
-        this.parents.put(branch, parent);
+        this.treeID = treeID;
+        this.parents = List.copyOf(parents);
+    }
+
+    /** Create a commit from its decoded fields. */
+    private Commit(String message, String timestamp, String treeID, List<String> parents) {
+        this.message = message;
+        this.timestamp = timestamp;
+        this.treeID = treeID;
+        this.parents = parents;
     }
 
-    /** Serialize the commit and store into repository, return the SHA-1 of the commit object */
+    /** Serialize the commit and store it into the repository, unless it is there already */
     public void save() {
-        String fileName = this.getCommitUID();
-        File f = join(COMMITS_DIR, fileName);
-        writeObject(f, this);
+        String uid = this.getCommitUID();
+        if (!ObjectStore.contains(COMMITS_DIR, uid)) {
+            ObjectStore.write(COMMITS_DIR, uid, encode());
+        }
+        CACHE.put(uid, this);
     }
 
     /** Deserialize the commit from the repository, and return the Commit object */
     public static Commit read(String commitID) {
-        String filename = expandCommitID(commitID);
+        // A full id can be looked up in the cache without listing the store
+        boolean full = commitID != null && commitID.length() == UID_LENGTH;
+        String fullID = full ? commitID.toLowerCase() : expandCommitID(commitID);
+        if (fullID == null) {
+            throw Utils.error(COMMIT_NOT_EXIST_ERR);
+        }
+        Commit commit = CACHE.get(fullID);
+        if (commit == null) {
+            if (full && !ObjectStore.contains(COMMITS_DIR, fullID)) {
+                throw Utils.error(COMMIT_NOT_EXIST_ERR);
+            }
+            commit = decode(ObjectStore.read(COMMITS_DIR, fullID));
+            commit.id = fullID;
+            CACHE.put(fullID, commit);
+        }
+        return commit;
+    }
+
+    /**
+     * Encode this commit as: message, timestamp, the root tree id
+     * and the parent ids, first parent first.
+     */
+    public byte[] encode() {
+        Codec.Writer out = new Codec.Writer(MAGIC, VERSION);
+        out.writeString(message).writeString(timestamp).writeId(getTreeID());
+        out.writeVarint(parents.size());
+        for (String parent : parents) {
+            out.writeId(parent);
+        }
+        return out.toByteArray();
+    }
 
-        File f = join(COMMITS_DIR, filename);
-        if (!f.isFile()) {
-            throw Utils.error("No commit with that id exists.");
+    /** Decode a commit written by encode(). */
+    public static Commit decode(byte[] data) {
+        Codec.Reader in = new Codec.Reader(data, MAGIC);
+        if (in.version() != VERSION) {
+            throw new IllegalArgumentException("unsupported commit version " + in.version());
+        }
+        String message = in.readString();
+        String timestamp = in.readString();
+        String treeID = in.readId();
+        int n = (int) in.readVarint();
+        List<String> parents = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            parents.add(in.readId());
         }
-        return readObject(f, Commit.class);
+        return new Commit(message, timestamp, treeID, List.copyOf(parents));
     }
 
-    /** Expand the commit id to full 40-byte long sha1 id */
+    /**
+     * Expand the commit id to full 40-byte long sha1 id, or null if no commit matches.
+     * Commits are fanned out by their first two hex digits (see ObjectStore),
+     * so this lists at most one shard of the commits directory.  An id that
+     * several commits start with is an error rather than a guess.
+     */
     private static String expandCommitID(String shortened) {
         // If the commit id is null OR exceeds 40 bytes, exit
         if (shortened == null || shortened.length() > 40) {
             throw error("Invalid filename");
         }
-
-        // Match the provided commit id with the file names under the directory
-        // The project description specified a more efficient way of organizing
-        // the commit directory structure in order to speed up the lookup process.
-        List<String> commitIDs = Utils.plainFilenamesIn(Utils.join(COMMITS_DIR));
-        assert commitIDs != null;
-        String filename = "";
-        for (String cid : commitIDs) {
-            if (cid.indexOf(shortened) == 0) {
-                filename = cid;
-                break;
-            }
+        List<String> ids = ObjectStore.expand(COMMITS_DIR, shortened, 2);
+        if (ids.size() > 1) {
+            throw error(COMMIT_AMBIGUOUS_ERR);
         }
-        return filename;
+        return ids.isEmpty() ? null : ids.get(0);
     }
 
     /**
@@ -105,15 +165,29 @@ public class Commit implements Serializable {
      * Otherwise, set it to the current date.
      */
     public void setTimestamp(boolean init) {
+        Date date = init ? new Date(0L) : new Date();
+        this.timestamp = dateFormat().format(date);
+    }
+
+    /** Return the time of this commit, in seconds since the epoch. */
+    public long getTime() {
+        try {
+            return dateFormat().parse(this.timestamp).getTime() / 1000;
+        } catch (ParseException e) {
+            throw error("Invalid commit timestamp.");
+        }
+    }
+
+    /** The format of commit timestamps. */
+    private static DateFormat dateFormat() {
         DateFormat df = new SimpleDateFormat("E MMM dd HH:mm:ss yyyy Z");
         df.setTimeZone(TimeZone.getTimeZone("UTC"));
-        Date date = init ? new Date(0L) : new Date();
-        this.timestamp = df.format(date);
+        return df;
     }
 
     /* Get a list of files tracked by the current commit */
     public List<String> getTrackedFiles() {
-        return new LinkedList<>(this.tree.keySet());
+        return new LinkedList<>(getTree().keySet());
     }
 
     public String getTimeStamp() {
@@ -124,45 +198,9 @@ public class Commit implements Serializable {
         return this.message;
     }
 
-    public void addParent(String branchToMerge, String branchHead) {
-        this.parents.put(branchToMerge, branchHead);
-    }
-
-    public String getParent(String branch) {
-        String parent = null;
-        try {
-            parent = this.parents.get(branch);
-        } catch (ClassCastException | NullPointerException e) {
-            throw error("Commit not on given branch.");
-        }
-        return parent;
-    }
-
-    public Collection<String> getParents() {
-        return this.parents.values();
-    }
-
-    /**
-     * Create the new newBranch, and update the commit parents
-     * @param newBranch newly created newBranch
-     * @return updated commit
-     */
-    public Commit branch(String newBranch, String currentBranch) {
-        try {
-            this.parents.put(newBranch, this.parents.get(currentBranch));
-        } catch (UnsupportedOperationException
-                | ClassCastException
-                | NullPointerException
-                | IllegalArgumentException e) {
-            throw error("Error creating new branch");
-        }
-        this.save();
-        return this;
-    }
-
-    public void removeBranch(String branch) {
-        this.parents.remove(branch);
-        this.save();
+    /** Return the ids of the parents of this commit, first parent first. */
+    public List<String> getParents() {
+        return this.parents;
     }
 
     /**
@@ -171,7 +209,10 @@ public class Commit implements Serializable {
      * @return String blob name if the file exists in the commit tree, null if it doesn't exist
      */
     public String getBlobName(String filename) {
-        return this.tree.get(filename);
+        if (tree != null) {
+            return tree.get(filename);
+        }
+        return Tree.lookup(treeID, filename);
     }
 
     /**
@@ -179,28 +220,34 @@ public class Commit implements Serializable {
      * @param filename file name to overwrite
      */
     public void writeFile(String filename) {
-        String blobName = tree.get(filename);
+        String blobName = getBlobName(filename);
         try {
-            String blob = Utils.readContentsAsString(Utils.join(BLOBS_DIR, blobName));
-            Utils.writeContents(Utils.join(CWD, filename), blob);
+            File file = Utils.join(CWD, filename);
+            file.getParentFile().mkdirs();
+            Blob.checkout(blobName, file);
         } catch (IllegalArgumentException e) {
             throw error("A branch with that name does not exist.");
         }
     }
 
+    /** Return the files of this commit, as a map from path to blob id.
+     *  The map must not be modified. */
     public Map<String, String> getTree() {
+        if (tree == null) {
+            tree = Tree.flatten(treeID);
+        }
         return tree;
     }
 
-    public Set<String> getBranches() {
-        return new HashSet<>(this.parents.keySet());
+    /** Return the id of the root tree of this commit. */
+    public String getTreeID() {
+        return treeID;
     }
 
     public String getCommitUID() {
-        return sha1(this.timestamp + this.message);
-    }
-
-    public boolean hasParent() {
-        return !this.parents.containsValue(null);
+        if (id == null) {
+            id = sha1((Object) encode());
+        }
+        return id;
     }
 }
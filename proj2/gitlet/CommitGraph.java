@@ -0,0 +1,316 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+import static gitlet.Utils.*;
+
+/** The commit graph: the ancestry of every commit in one fixed-width table.
+ *
+ *  GITLET_DIR/commit-graph holds "CGPH", a version, and then one RECORD-byte
+ *  record per commit, appended when the commit is made:
+ *
+ *      [id:20][first parent:4][second parent:4][generation:4][time:8]
+ *
+ *  Parents are given as record positions (-1 for none) and the generation
+ *  of a commit is one more than the largest generation of its parents, the
+ *  initial commit having generation 1.  Since a commit is always appended
+ *  after its parents, the table is in topological order.
+ *
+ *  The table is memory mapped, so walking ancestry (log, merge-base) never
+ *  deserializes a commit object.  Since it is in topological order rather
+ *  than sorted by id, commits are found by binary search over the record
+ *  positions sorted by the first four bytes of their ids, kept in memory
+ *  and extended as commits are appended.
+ *
+ *  @author Mingqian Yu
+ */
+class CommitGraph {
+
+    private static final int VERSION = 1;
+    private static final int HEADER = 8;
+    private static final int ID_BYTES = 20;
+    private static final int RECORD = ID_BYTES + 4 + 4 + 4 + 8;
+    private static final int NONE = -1;
+
+    /** Open graphs, keyed by the path of the gitlet directory holding them. */
+    private static final Map<String, CommitGraph> OPEN = new HashMap<>();
+
+    /** The commit-graph file. */
+    private final File file;
+    /** Mapped contents of the file, or null if it does not exist yet. */
+    private MappedByteBuffer table;
+    /** Number of records in the table. */
+    private int count;
+    /** One key per record, [first four id bytes:32][position:32], in
+     *  increasing order, or null until first needed.  The id bytes have
+     *  their sign bit flipped so that signed order is unsigned id order. */
+    private long[] lookup;
+
+    private CommitGraph(File gitletDir) {
+        file = join(gitletDir, "commit-graph");
+        map();
+    }
+
+    /** Return the commit graph of the repository whose gitlet directory is GITLETDIR. */
+    static CommitGraph of(File gitletDir) {
+        CommitGraph graph = OPEN.computeIfAbsent(
+                gitletDir.getAbsolutePath(), k -> new CommitGraph(gitletDir));
+        // Another process (the CLI next to a server, say) may have appended to it
+        if (graph.file.length() != (graph.table == null ? 0 : graph.table.capacity())) {
+            graph.map();
+        }
+        return graph;
+    }
+
+    /** (Re)map the commit-graph file, if it exists. */
+    private void map() {
+        table = null;
+        count = 0;
+        lookup = null;
+        if (!file.isFile()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            table = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        count = (table.capacity() - HEADER) / RECORD;
+    }
+
+    /** Record the commit ID, made at TIME (seconds since the epoch), whose
+     *  parents are FIRSTPARENT and SECONDPARENT (either may be null).  Does
+     *  nothing if ID is already recorded. */
+    void append(String id, String firstParent, String secondParent, long time) {
+        if (contains(id)) {
+            return;
+        }
+        int p1 = firstParent == null ? NONE : position(firstParent);
+        int p2 = secondParent == null ? NONE : position(secondParent);
+        int generation = 1 + Math.max(p1 == NONE ? 0 : generation(p1),
+                p2 == NONE ? 0 : generation(p2));
+
+        long[] sorted = lookup;
+        ByteBuffer buf = ByteBuffer.allocate((count == 0 ? HEADER : 0) + RECORD);
+        if (count == 0) {
+            buf.put("CGPH".getBytes()).putInt(VERSION);
+        }
+        buf.put(ObjectId.toRaw(id)).putInt(p1).putInt(p2).putInt(generation).putLong(time);
+        buf.flip();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            // Drop anything past the last whole record, left by an interrupted append
+            channel.truncate(count == 0 ? 0 : offset(count));
+            channel.write(buf);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        int pos = count;
+        map();
+        if (sorted != null && count == pos + 1) {
+            // Keep the lookup of the old table, with the new record inserted
+            long key = key(table.getInt(offset(pos)), pos);
+            int at = -Arrays.binarySearch(sorted, key) - 1;
+            lookup = new long[count];
+            System.arraycopy(sorted, 0, lookup, 0, at);
+            lookup[at] = key;
+            System.arraycopy(sorted, at, lookup, at + 1, pos - at);
+        }
+    }
+
+    /** Drop the records of the commits for which LIVE is false.  The
+     *  parents of a live commit must be live too.  The table is rewritten
+     *  to a temporary file that then replaces it. */
+    void retain(Predicate<String> live) {
+        int[] moved = new int[count];
+        ByteBuffer buf = ByteBuffer.allocate(offset(count));
+        buf.put("CGPH".getBytes()).putInt(VERSION);
+        int kept = 0;
+        for (int pos = 0; pos < count; pos++) {
+            if (!live.test(idAt(pos))) {
+                moved[pos] = NONE;
+                continue;
+            }
+            moved[pos] = kept++;
+            byte[] record = new byte[RECORD];
+            table.get(offset(pos), record);
+            ByteBuffer r = ByteBuffer.wrap(record);
+            for (int k = 0; k < 2; k++) {
+                int parent = r.getInt(ID_BYTES + 4 * k);
+                r.putInt(ID_BYTES + 4 * k, parent == NONE ? NONE : moved[parent]);
+            }
+            buf.put(record);
+        }
+        if (kept == count) {
+            return;
+        }
+        File tmp = join(file.getParentFile(), "commit-graph.tmp");
+        writeContents(tmp, (Object) Arrays.copyOf(buf.array(), offset(kept)));
+        try {
+            Files.move(tmp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        map();
+    }
+
+    /** Return true iff the commit ID is recorded. */
+    boolean contains(String id) {
+        return find(id) != NONE;
+    }
+
+    /** Return the id of the first parent of commit ID, or null if it has none. */
+    String firstParent(String id) {
+        int p = table.getInt(offset(position(id)) + ID_BYTES);
+        return p == NONE ? null : idAt(p);
+    }
+
+    /** Return the id of the second (merged-in) parent of commit ID, or null. */
+    String secondParent(String id) {
+        int p = table.getInt(offset(position(id)) + ID_BYTES + 4);
+        return p == NONE ? null : idAt(p);
+    }
+
+    /**
+     * Return the id of a best common ancestor of commits A and B: one that
+     * is an ancestor of both and is not an ancestor of any other such commit.
+     *
+     * Both commits paint their ancestors, visiting commits in decreasing
+     * order of generation.  Every descendant of a commit has a larger
+     * generation, so by the time a commit is reached it has received all
+     * the paint it ever will, and the first commit found painted by both
+     * sides is a lowest common ancestor.
+     */
+    String mergeBase(String a, String b) {
+        if (a.equals(b)) {
+            return a;
+        }
+        final int fromA = 1;
+        final int fromB = 2;
+        Map<Integer, Integer> paint = new HashMap<>();
+        PriorityQueue<Integer> queue = new PriorityQueue<>((x, y) -> {
+            int cmp = Integer.compare(generation(y), generation(x));
+            return cmp != 0 ? cmp : Long.compare(time(y), time(x));
+        });
+        int pa = position(a);
+        int pb = position(b);
+        paint.put(pa, fromA);
+        paint.put(pb, fromB);
+        queue.add(pa);
+        queue.add(pb);
+        while (!queue.isEmpty()) {
+            int pos = queue.poll();
+            int flags = paint.get(pos);
+            if (flags == (fromA | fromB)) {
+                return idAt(pos);
+            }
+            for (int k = 0; k < 2; k++) {
+                int parent = table.getInt(offset(pos) + ID_BYTES + 4 * k);
+                if (parent == NONE) {
+                    continue;
+                }
+                // A parent has a smaller generation than its children, so it
+                // is still queued and is polled with all its paint.  Painted
+                // positions are exactly those queued, so each is added once.
+                int old = paint.getOrDefault(parent, 0);
+                if (old == 0) {
+                    queue.add(parent);
+                }
+                paint.put(parent, old | flags);
+            }
+        }
+        return null;
+    }
+
+    /** Return the generation of commit ID: 1 for a root commit, and more
+     *  than the generation of any of its parents otherwise. */
+    int generation(String id) {
+        return generation(position(id));
+    }
+
+    /** Return the generation of the commit at record POS. */
+    private int generation(int pos) {
+        return table.getInt(offset(pos) + ID_BYTES + 8);
+    }
+
+    /** Return the commit time of the commit at record POS. */
+    private long time(int pos) {
+        return table.getLong(offset(pos) + ID_BYTES + 12);
+    }
+
+    /** Return the id of the commit at record POS. */
+    private String idAt(int pos) {
+        byte[] raw = new byte[ID_BYTES];
+        table.get(offset(pos), raw);
+        return ObjectId.toHex(raw);
+    }
+
+    /** Return the record position of commit ID.  Throws a GitletException if
+     *  the commit is not recorded. */
+    private int position(String id) {
+        int pos = find(id);
+        if (pos == NONE) {
+            throw error(Constants.COMMIT_NOT_EXIST_ERR);
+        }
+        return pos;
+    }
+
+    /** Return the record position of commit ID, or NONE if it is not
+     *  recorded.  Binary search finds the keys sharing the first four bytes
+     *  of ID, and only those records are compared in full. */
+    private int find(String id) {
+        if (table == null || id == null || id.length() != UID_LENGTH) {
+            return NONE;
+        }
+        byte[] raw = ObjectId.toRaw(id);
+        int prefix = ByteBuffer.wrap(raw).getInt();
+        long[] keys = lookup();
+        int at = Arrays.binarySearch(keys, key(prefix, 0));
+        long high = key(prefix, 0) >>> 32;
+        byte[] probe = new byte[ID_BYTES];
+        for (int i = at < 0 ? -at - 1 : at; i < count && keys[i] >>> 32 == high; i++) {
+            int pos = (int) keys[i];
+            table.get(offset(pos), probe);
+            if (Arrays.equals(probe, raw)) {
+                return pos;
+            }
+        }
+        return NONE;
+    }
+
+    /** Return the lookup keys of the table, building them on first use. */
+    private long[] lookup() {
+        if (lookup == null) {
+            lookup = new long[count];
+            for (int pos = 0; pos < count; pos++) {
+                lookup[pos] = key(table.getInt(offset(pos)), pos);
+            }
+            Arrays.sort(lookup);
+        }
+        return lookup;
+    }
+
+    /** Return the lookup key of the record POS, whose id starts with the
+     *  four bytes PREFIX. */
+    private static long key(int prefix, int pos) {
+        return (long) (prefix ^ Integer.MIN_VALUE) << 32 | pos;
+    }
+
+    /** Return the byte offset of record POS in the table. */
+    private static int offset(int pos) {
+        return HEADER + pos * RECORD;
+    }
+}
@@ -0,0 +1,298 @@
+package gitlet;
+
+import java.io.File;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+import static gitlet.Utils.*;
+
+/** Secondary indexes over all commits, maintained as commits are made, so
+ *  that find and global-log never have to read every commit object.
+ *
+ *    GITLET_DIR/global-log  "GLOG", a version, then one record per commit
+ *                           in the order they were made:
+ *                           [id][timestamp][message] (see Codec), each
+ *                           followed by a trailer [length:4][crc32:4] of
+ *                           the record.
+ *    GITLET_DIR/messages    A fan-out directory (see ObjectStore) keyed by
+ *                           the SHA-1 of a commit message.  Each file holds
+ *                           the raw 20-byte ids of the commits with that
+ *                           message, so find is a single file read.
+ *
+ *  Repositories made before these indexes existed get them built from the
+ *  commit objects the first time they are needed.  The global log is built
+ *  aside and moved into place last, so a build cut short is simply done
+ *  again.  After that both indexes are appended to directly.  An append cut
+ *  short by a crash leaves part of a record, which readers ignore and the
+ *  next append truncates, as in CommitGraph.  The trailer lets an append
+ *  check that the log ends in a whole record by reading only that record;
+ *  only after a crash is the whole log read to find where it does.
+ *
+ *  @author Mingqian Yu
+ */
+class CommitIndex {
+
+    private static final String MAGIC = "GLOG";
+    private static final int VERSION = 2;
+    private static final int HEADER = 5;
+    private static final int TRAILER = 8;
+    private static final int ID_BYTES = 20;
+
+    /** A commit as listed in the global log. */
+    static class Entry {
+        final String id;
+        final String timestamp;
+        final String message;
+
+        Entry(String id, String timestamp, String message) {
+            this.id = id;
+            this.timestamp = timestamp;
+            this.message = message;
+        }
+    }
+
+    /** The global log file and message index directory. */
+    private final File logFile;
+    private final File messagesDir;
+    /** The commits the indexes are built from. */
+    private final File commitsDir;
+
+    private CommitIndex(File gitletDir) {
+        commitsDir = join(gitletDir, "commits");
+        logFile = join(gitletDir, "global-log");
+        messagesDir = join(gitletDir, "messages");
+    }
+
+    /** Return the indexes of the repository whose gitlet directory is GITLETDIR. */
+    static CommitIndex of(File gitletDir) {
+        return new CommitIndex(gitletDir);
+    }
+
+    /** Add COMMIT, whose id is ID, to the global log and the message index.
+     *  COMMIT must already be saved. */
+    void record(String id, Commit commit) {
+        if (!ensureBuilt()) {
+            append(id, commit);
+        }
+    }
+
+    /** Return the ids of the commits whose message is MESSAGE, oldest first. */
+    List<String> find(String message) {
+        ensureBuilt();
+        String key = sha1(message);
+        Set<String> ids = new LinkedHashSet<>();
+        if (ObjectStore.file(messagesDir, key).isFile()) {
+            byte[] raw = ObjectStore.readLoose(messagesDir, key);
+            for (int i = 0; i + ID_BYTES <= raw.length; i += ID_BYTES) {
+                byte[] id = new byte[ID_BYTES];
+                System.arraycopy(raw, i, id, 0, ID_BYTES);
+                ids.add(ObjectId.toHex(id));
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    /** Return every commit ever made, oldest first. */
+    List<Entry> all() {
+        ensureBuilt();
+        List<Entry> entries = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (Entry entry : read(readContents(logFile)).entries) {
+            // A commit made twice, with the same id, is listed only once
+            if (seen.add(entry.id)) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /** The whole records of a global log, and where the last one ends. */
+    private static class Log {
+        final List<Entry> entries = new ArrayList<>();
+        int end;
+    }
+
+    /** Return the whole records of the global log DATA.  Whatever follows
+     *  the last of them is part of a record an interrupted append left. */
+    private static Log read(byte[] data) {
+        Codec.Reader in = new Codec.Reader(data, MAGIC);
+        if (in.version() != VERSION) {
+            throw new IllegalArgumentException("unsupported global log version " + in.version());
+        }
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        Log log = new Log();
+        log.end = in.position();
+        while (in.hasMore()) {
+            int start = in.position();
+            Entry entry;
+            try {
+                entry = new Entry(in.readId(), in.readString(), in.readString());
+            } catch (IndexOutOfBoundsException excp) {
+                break;
+            }
+            int end = in.position();
+            if (end + TRAILER > data.length || buf.getInt(end) != end - start
+                    || buf.getInt(end + 4) != crc(data, start, end - start)) {
+                break;
+            }
+            in.skip(TRAILER);
+            log.entries.add(entry);
+            log.end = in.position();
+        }
+        return log;
+    }
+
+    /** Return where the last whole record of the global log ends.  If the
+     *  trailer at the end of the file matches the record before it, that is
+     *  the end of the file; otherwise an append was interrupted, and the
+     *  log is read through to find the last whole record. */
+    private long wholeEnd() {
+        long size = logFile.length();
+        if (size == HEADER) {
+            return size;
+        }
+        if (size >= HEADER + TRAILER) {
+            try (FileChannel channel = FileChannel.open(logFile.toPath())) {
+                ByteBuffer trailer = readFully(channel, size - TRAILER, TRAILER);
+                int length = trailer.getInt(0);
+                if (length > 0 && length <= size - HEADER - TRAILER) {
+                    byte[] record = readFully(channel, size - TRAILER - length, length).array();
+                    if (crc(record, 0, length) == trailer.getInt(4)) {
+                        return size;
+                    }
+                }
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        return read(readContents(logFile)).end;
+    }
+
+    /** Return the LENGTH bytes of CHANNEL at POSITION. */
+    private static ByteBuffer readFully(FileChannel channel, long position, int length)
+            throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining() && channel.read(buf, position + buf.position()) >= 0) {
+            continue;
+        }
+        return buf;
+    }
+
+    /** Return the CRC-32 of the LENGTH bytes of DATA from START. */
+    private static int crc(byte[] data, int start, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, start, length);
+        return (int) crc.getValue();
+    }
+
+    /** Return the global log record of ENTRY, followed by its trailer. */
+    private static byte[] record(Entry entry) {
+        byte[] record = new Codec.Writer().writeId(entry.id)
+                .writeString(entry.timestamp).writeString(entry.message)
+                .toByteArray();
+        return ByteBuffer.allocate(record.length + TRAILER).put(record)
+                .putInt(record.length).putInt(crc(record, 0, record.length)).array();
+    }
+
+    /** Drop the commits for which LIVE is false from both indexes, keeping
+     *  the order of the global log. */
+    void retain(Predicate<String> live) {
+        if (!logFile.isFile()) {
+            return;
+        }
+        List<Entry> kept = new ArrayList<>();
+        for (Entry entry : read(readContents(logFile)).entries) {
+            if (live.test(entry.id)) {
+                kept.add(entry);
+            }
+        }
+        rewrite(kept);
+    }
+
+    /** Build the indexes from the commit objects, if they don't exist yet
+     *  or were written in an older format.  Returns true iff they had to be
+     *  built. */
+    private boolean ensureBuilt() {
+        if (logFile.isFile() && current()) {
+            return false;
+        }
+        List<Entry> entries = new ArrayList<>();
+        for (String id : ObjectStore.list(commitsDir)) {
+            Commit commit = Commit.decode(ObjectStore.read(commitsDir, id));
+            entries.add(new Entry(id, commit.getTimeStamp(), commit.getMessage()));
+        }
+        rewrite(entries);
+        return true;
+    }
+
+    /** Return true iff the global log is in the current format. */
+    private boolean current() {
+        try (FileChannel channel = FileChannel.open(logFile.toPath())) {
+            byte[] header = readFully(channel, 0, HEADER).array();
+            return new Codec.Reader(header, MAGIC).version() == VERSION;
+        } catch (IOException | IllegalArgumentException excp) {
+            return false;
+        }
+    }
+
+    /**
+     * Replace both indexes with ones listing ENTRIES, in order.  The global
+     * log is removed first and moved back into place last, so if this is
+     * interrupted the indexes count as missing and are built again the
+     * next time they are needed.
+     */
+    private void rewrite(List<Entry> entries) {
+        logFile.delete();
+        ObjectStore.deleteLoose(messagesDir, ObjectStore.listLoose(messagesDir));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(new Codec.Writer(MAGIC, VERSION).toByteArray());
+        for (Entry entry : entries) {
+            out.writeBytes(record(entry));
+            File ids = ObjectStore.file(messagesDir, sha1(entry.message));
+            ids.getParentFile().mkdirs();
+            appendBytes(ids, ids.length(), ObjectId.toRaw(entry.id));
+        }
+        File tmp = join(logFile.getParentFile(), "global-log.tmp");
+        writeContents(tmp, (Object) out.toByteArray());
+        try {
+            Files.move(tmp.toPath(), logFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Append the records for COMMIT, whose id is ID, to both indexes. */
+    private void append(String id, Commit commit) {
+        Entry entry = new Entry(id, commit.getTimeStamp(), commit.getMessage());
+        appendBytes(logFile, wholeEnd(), record(entry));
+        File ids = ObjectStore.file(messagesDir, sha1(commit.getMessage()));
+        ids.getParentFile().mkdirs();
+        appendBytes(ids, ids.length() - ids.length() % ID_BYTES, ObjectId.toRaw(id));
+    }
+
+    /** Append BYTES to FILE, creating it if needed, after dropping anything
+     *  past its first WHOLE bytes: the part of a record left by an
+     *  interrupted append. */
+    private static void appendBytes(File file, long whole, byte[] bytes) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.truncate(whole);
+            channel.write(ByteBuffer.wrap(bytes));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
@@ -24,6 +24,15 @@ public class Constants {
 
     public static final File BLOBS_DIR = join(GITLET_DIR, "blobs");
 
+    public static final File TREES_DIR = join(GITLET_DIR, "trees");
+
+    public static final File REMOTES_DIR = join(GITLET_DIR, "remotes");
+
+    /** Storage options */
+
+    /** Whether new blobs are stored zlib-compressed, set by the GITLET_COMPRESS variable. */
+    public static final boolean BLOB_COMPRESSION = System.getenv("GITLET_COMPRESS") != null;
+
     /** Error messages */
 
     public static final String INCORRECT_OPERANDS = "Incorrect operands.";
@@ -38,16 +47,28 @@ public class Constants {
 
     public static final String STAGING_AREA_EMPTY_ERR = "No changes added to the commit.";
 
+    public static final String PATH_NOT_TRACKABLE_ERR =
+            "That path is outside the working directory or inside .gitlet.";
+
     public static final String RM_ERR = "No reason to remove the file.";
 
     public static final String COMMIT_NOT_EXIST_ERR = "No commit with that id exists.";
 
+    public static final String COMMIT_AMBIGUOUS_ERR = "More than one commit has that id.";
+
     public static final String FILE_NOT_IN_COMMIT = "File does not exist in that commit.";
 
     public static final String CHECKOUT_CURRENT_BRANCH = "No need to checkout the current branch.";
 
     public static final String BRANCH_NOT_EXIST = "No such branch exists.";
 
+    public static final String BRANCH_NAME_INVALID = "That is not a valid branch name.";
+
+    public static final String REMOTE_NOT_FOUND = "Remote directory not found.";
+
+    public static final String REMOTE_UNCOMMITTED_ERR =
+            "The remote has uncommitted changes; commit or discard them first.";
+
     public static final String UNTRACKED_ERR = "There is an untracked file in the way; "
             + "delete it, or add and commit it first.";
 }
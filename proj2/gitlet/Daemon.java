@@ -0,0 +1,116 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static gitlet.Constants.*;
+import static gitlet.Utils.*;
+
+/** The long-running server behind `gitlet serve`.
+ *
+ *  It listens on the Unix domain socket SOCKET and runs one command per
+ *  connection, exactly as Main would, in this one JVM.  The Repository is
+ *  kept loaded between commands (see Repository.keepResident), as are the
+ *  object caches, the commit graph and the pack, so a command pays neither
+ *  JVM startup nor repository loading.
+ *
+ *  The protocol is plain enough for socat or nc: the client sends each
+ *  argument followed by a NUL byte and shuts down its side of the
+ *  connection; the server sends back everything the command printed and
+ *  closes the connection.  Client is the thin client that does this.
+ *
+ *  Commands run one at a time, in the order they connect.
+ *
+ *  @author Mingqian Yu
+ */
+class Daemon {
+
+    /** The socket the server listens on. */
+    static final File SOCKET = join(GITLET_DIR, "daemon.sock");
+
+    /** Serve commands until the process is killed. */
+    static void serve() {
+        if (SOCKET.exists()) {
+            try (SocketChannel running = Client.connect(SOCKET)) {
+                if (running != null) {
+                    throw error("A gitlet server is already running.");
+                }
+            } catch (IOException excp) {
+                // Closing a connection that was never used
+            }
+            // Left behind by a server that did not shut down cleanly
+            SOCKET.delete();
+        }
+        Repository.keepResident();
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(SOCKET.toPath()));
+            Runtime.getRuntime().addShutdownHook(new Thread(SOCKET::delete));
+            message("Serving %s", SOCKET);
+            while (true) {
+                try (SocketChannel client = server.accept()) {
+                    handle(client);
+                } catch (IOException excp) {
+                    // The client went away, the next one may not
+                }
+            }
+        } catch (IOException excp) {
+            throw error("Cannot serve on %s: %s", SOCKET, excp.getMessage());
+        }
+    }
+
+    /** Run the command sent over CLIENT and send back its output. */
+    private static void handle(SocketChannel client) throws IOException {
+        byte[] request = Channels.newInputStream(client).readAllBytes();
+        String[] args = decode(request);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream capture = new PrintStream(output, true, StandardCharsets.UTF_8);
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+        System.setOut(capture);
+        System.setErr(capture);
+        try {
+            if (args.length > 0 && args[0].equals("serve")) {
+                message("A gitlet server is already running.");
+            } else {
+                Main.main(args);
+            }
+        } catch (RuntimeException | Error excp) {
+            // The command did not get to save, so forget whatever it left half done
+            Journal.of(GITLET_DIR).abort();
+            Repository.dropResident();
+            excp.printStackTrace(capture);
+        } finally {
+            System.setOut(stdout);
+            System.setErr(stderr);
+        }
+        ByteBuffer reply = ByteBuffer.wrap(output.toByteArray());
+        while (reply.hasRemaining()) {
+            client.write(reply);
+        }
+    }
+
+    /** Split REQUEST into its NUL-terminated arguments. */
+    private static String[] decode(byte[] request) {
+        List<String> args = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < request.length; i++) {
+            if (request[i] == 0) {
+                args.add(new String(request, start, i - start, StandardCharsets.UTF_8));
+                start = i + 1;
+            }
+        }
+        return args.toArray(new String[0]);
+    }
+}
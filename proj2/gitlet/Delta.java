@@ -0,0 +1,131 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Binary deltas between two versions of an object, used by Pack.
+ *
+ *  A delta is [base length][result length] followed by instructions, all
+ *  numbers being unsigned LEB128 varints:
+ *
+ *    COPY   0 offset length   copy LENGTH bytes of the base from OFFSET
+ *    INSERT 1 length bytes    append the LENGTH literal BYTES
+ *
+ *  Deltas are found by indexing the base in BLOCK-byte chunks and extending
+ *  every chunk of the target that hits the index as far as it matches.
+ *
+ *  @author Mingqian Yu
+ */
+class Delta {
+
+    private static final int COPY = 0;
+    private static final int INSERT = 1;
+
+    /** Size of the chunks the base is indexed by, and so the shortest copy. */
+    private static final int BLOCK = 16;
+
+    /** Return a delta that turns BASE into TARGET. */
+    static byte[] create(byte[] base, byte[] target) {
+        Map<Integer, Integer> index = new HashMap<>();
+        for (int i = 0; i + BLOCK <= base.length; i += BLOCK) {
+            index.putIfAbsent(hash(base, i), i);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, base.length);
+        writeVarint(out, target.length);
+
+        int literalStart = 0;
+        int i = 0;
+        while (i + BLOCK <= target.length) {
+            Integer candidate = index.get(hash(target, i));
+            int length = candidate == null ? 0 : matchLength(base, candidate, target, i);
+            if (length < BLOCK) {
+                i += 1;
+                continue;
+            }
+            writeInsert(out, target, literalStart, i);
+            out.write(COPY);
+            writeVarint(out, candidate);
+            writeVarint(out, length);
+            i += length;
+            literalStart = i;
+        }
+        writeInsert(out, target, literalStart, target.length);
+        return out.toByteArray();
+    }
+
+    /** Return the result of applying DELTA to BASE. */
+    static byte[] apply(byte[] base, byte[] delta) {
+        int[] pos = {0};
+        int baseLength = readVarint(delta, pos);
+        if (baseLength != base.length) {
+            throw new IllegalArgumentException("delta does not match its base");
+        }
+        byte[] result = new byte[readVarint(delta, pos)];
+        int written = 0;
+        while (pos[0] < delta.length) {
+            int op = delta[pos[0]++];
+            if (op == COPY) {
+                int offset = readVarint(delta, pos);
+                int length = readVarint(delta, pos);
+                System.arraycopy(base, offset, result, written, length);
+                written += length;
+            } else {
+                int length = readVarint(delta, pos);
+                System.arraycopy(delta, pos[0], result, written, length);
+                pos[0] += length;
+                written += length;
+            }
+        }
+        return result;
+    }
+
+    /** Emit an INSERT of TARGET[FROM..TO) to OUT, if it is not empty. */
+    private static void writeInsert(ByteArrayOutputStream out, byte[] target, int from, int to) {
+        if (from < to) {
+            out.write(INSERT);
+            writeVarint(out, to - from);
+            out.write(target, from, to - from);
+        }
+    }
+
+    /** Return how many bytes of A from AI on equal those of B from BI. */
+    private static int matchLength(byte[] a, int ai, byte[] b, int bi) {
+        int n = 0;
+        while (ai + n < a.length && bi + n < b.length && a[ai + n] == b[bi + n]) {
+            n += 1;
+        }
+        return n;
+    }
+
+    /** Return a hash of the BLOCK bytes of DATA starting at FROM. */
+    private static int hash(byte[] data, int from) {
+        int h = 1;
+        for (int i = from; i < from + BLOCK; i++) {
+            h = 31 * h + data[i];
+        }
+        return h;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(byte[] data, int[] pos) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[pos[0]++];
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,425 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Line diffs, unified diff output and three-way merges of file contents.
+ *
+ *  Contents are split into lines, each keeping its '\n', and every distinct
+ *  line is interned to a small int, so the diff itself only ever compares
+ *  ints.  The diff is Myers' O(ND) algorithm in its linear-space form,
+ *  after stripping the common prefix and suffix, which for files with few
+ *  changes leaves very little to search.  Memory stays O(N + M) even for
+ *  files that have nothing in common.
+ *
+ *  Lines are decoded as ISO-8859-1, which maps every byte to one char, so
+ *  files in any encoding (or none) round-trip unchanged.
+ *
+ *  @author Mingqian Yu
+ */
+class Diff {
+
+    /** A region where two line sequences differ: lines [aStart, aEnd) of the
+     *  first were replaced by lines [bStart, bEnd) of the second. */
+    static class Hunk {
+        final int aStart;
+        final int aEnd;
+        final int bStart;
+        final int bEnd;
+
+        Hunk(int aStart, int aEnd, int bStart, int bEnd) {
+            this.aStart = aStart;
+            this.aEnd = aEnd;
+            this.bStart = bStart;
+            this.bEnd = bEnd;
+        }
+    }
+
+    /** Interns lines to ints, equal lines getting equal ints. */
+    static class Lines {
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        /** Return the interned ids of the lines of CONTENTS. */
+        int[] intern(List<String> lines) {
+            int[] result = new int[lines.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = ids.computeIfAbsent(lines.get(i), k -> ids.size());
+            }
+            return result;
+        }
+    }
+
+    /** Return the lines of CONTENTS, each with its terminating '\n' (the
+     *  last line may have none). */
+    static List<String> split(byte[] contents) {
+        String text = new String(contents, StandardCharsets.ISO_8859_1);
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start);
+            end = end < 0 ? text.length() : end + 1;
+            lines.add(text.substring(start, end));
+            start = end;
+        }
+        return lines;
+    }
+
+    /** Return the hunks where A and B differ, in order. */
+    static List<Hunk> diff(int[] a, int[] b) {
+        List<Hunk> hunks = new ArrayList<>();
+        if (disjoint(a, b)) {
+            // E.g. a regenerated file: one hunk, without searching D = N + M edits for it
+            if (a.length > 0 || b.length > 0) {
+                hunks.add(new Hunk(0, a.length, 0, b.length));
+            }
+            return hunks;
+        }
+        compare(a, 0, a.length, b, 0, b.length, hunks);
+        return hunks;
+    }
+
+    /** Return true iff A and B, interned lines, have no line in common. */
+    private static boolean disjoint(int[] a, int[] b) {
+        BitSet seen = new BitSet();
+        for (int line : a) {
+            seen.set(line);
+        }
+        for (int line : b) {
+            if (seen.get(line)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Append to HUNKS the differences between A[aLo, aHi) and B[bLo, bHi).
+     * The common prefix and suffix are stripped; what is left is split at a
+     * point the shortest edit path goes through (see bisect), and the two
+     * halves are compared in turn.
+     */
+    private static void compare(int[] a, int aLo, int aHi, int[] b, int bLo, int bHi,
+                                List<Hunk> hunks) {
+        while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+            aLo += 1;
+            bLo += 1;
+        }
+        while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+            aHi -= 1;
+            bHi -= 1;
+        }
+        if (aLo == aHi || bLo == bHi) {
+            if (aLo < aHi || bLo < bHi) {
+                add(hunks, aLo, aHi, bLo, bHi);
+            }
+            return;
+        }
+        int[] split = bisect(a, aLo, aHi, b, bLo, bHi);
+        if (split == null) {
+            add(hunks, aLo, aHi, bLo, bHi);
+            return;
+        }
+        compare(a, aLo, split[0], b, bLo, split[1], hunks);
+        compare(a, split[0], aHi, b, split[1], bHi, hunks);
+    }
+
+    /**
+     * Return a point {x, y} on a shortest edit path from (aLo, bLo) to
+     * (aHi, bHi), halfway along it, or null if there is none (never the
+     * case for a correct search).  This is Myers' linear-space variant:
+     * furthest reaching paths are extended from both corners at once, one
+     * edit at a time, until they overlap.  Only the current frontier of each
+     * side is kept, so this takes O(N + M) space however different A and B
+     * are.  Both ranges are non-empty, and differ in their first and in
+     * their last element.
+     */
+    private static int[] bisect(int[] a, int aLo, int aHi, int[] b, int bLo, int bHi) {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int maxD = (n + m + 1) / 2;
+        int offset = maxD;
+        int length = 2 * maxD + 2;
+        // x of the furthest reaching path on each diagonal k = x - y, from
+        // the start (forward) and, counted from the end, from the end (backward)
+        int[] forward = new int[length];
+        int[] backward = new int[length];
+        Arrays.fill(forward, -1);
+        Arrays.fill(backward, -1);
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+        int delta = n - m;
+        // With an odd delta the paths first meet on a forward step, else on a backward one
+        boolean front = (delta & 1) != 0;
+        // Diagonals to skip at either end, once their paths have left the grid
+        int kStart = 0;
+        int kEnd = 0;
+        int kStartBack = 0;
+        int kEndBack = 0;
+        for (int d = 0; d < maxD; d++) {
+            for (int k = -d + kStart; k <= d - kEnd; k += 2) {
+                int i = offset + k;
+                int x = k == -d || (k != d && forward[i - 1] < forward[i + 1])
+                        ? forward[i + 1] : forward[i - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a[aLo + x] == b[bLo + y]) {
+                    x += 1;
+                    y += 1;
+                }
+                forward[i] = x;
+                if (x > n) {
+                    kEnd += 2;
+                } else if (y > m) {
+                    kStart += 2;
+                } else if (front) {
+                    int j = offset + delta - k;
+                    if (j >= 0 && j < length && backward[j] != -1 && x >= n - backward[j]) {
+                        return new int[] {aLo + x, bLo + y};
+                    }
+                }
+            }
+            for (int k = -d + kStartBack; k <= d - kEndBack; k += 2) {
+                int j = offset + k;
+                int x = k == -d || (k != d && backward[j - 1] < backward[j + 1])
+                        ? backward[j + 1] : backward[j - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a[aHi - 1 - x] == b[bHi - 1 - y]) {
+                    x += 1;
+                    y += 1;
+                }
+                backward[j] = x;
+                if (x > n) {
+                    kEndBack += 2;
+                } else if (y > m) {
+                    kStartBack += 2;
+                } else if (!front) {
+                    int i = offset + delta - k;
+                    if (i >= 0 && i < length && forward[i] != -1 && forward[i] >= n - x) {
+                        int fx = forward[i];
+                        return new int[] {aLo + fx, bLo + fx - (i - offset)};
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Append the hunk replacing A[aLo, aHi) with B[bLo, bHi) to HUNKS,
+     *  merged into the last one if the two touch. */
+    private static void add(List<Hunk> hunks, int aLo, int aHi, int bLo, int bHi) {
+        if (!hunks.isEmpty()) {
+            Hunk last = hunks.get(hunks.size() - 1);
+            if (last.aEnd == aLo && last.bEnd == bLo) {
+                hunks.set(hunks.size() - 1, new Hunk(last.aStart, aHi, last.bStart, bHi));
+                return;
+            }
+        }
+        hunks.add(new Hunk(aLo, aHi, bLo, bHi));
+    }
+
+    /** Lines of context around each hunk of a unified diff. */
+    private static final int CONTEXT = 3;
+
+    /**
+     * Return the unified diff turning A into B, the contents of the file at
+     * PATH, in git's format.  A null side means the file does not exist on
+     * that side.  Returns "" if the two are the same.
+     */
+    static String unified(String path, byte[] a, byte[] b) {
+        StringBuilder out = new StringBuilder();
+        out.append("diff --git a/").append(path).append(" b/").append(path).append('\n');
+        if (a == null) {
+            out.append("new file\n");
+        } else if (b == null) {
+            out.append("deleted file\n");
+        }
+        byte[] left = a == null ? new byte[0] : a;
+        byte[] right = b == null ? new byte[0] : b;
+        if (isBinary(left) || isBinary(right)) {
+            out.append(String.format("Binary files %s and %s differ\n",
+                    a == null ? "/dev/null" : "a/" + path, b == null ? "/dev/null" : "b/" + path));
+            return out.toString();
+        }
+        out.append(a == null ? "--- /dev/null" : "--- a/" + path).append('\n');
+        out.append(b == null ? "+++ /dev/null" : "+++ b/" + path).append('\n');
+
+        Lines interner = new Lines();
+        List<String> aLines = split(left);
+        List<String> bLines = split(right);
+        List<Hunk> hunks = diff(interner.intern(aLines), interner.intern(bLines));
+        if (hunks.isEmpty()) {
+            // An empty file being added or deleted still shows its header
+            return a == null || b == null ? out.toString() : "";
+        }
+        int i = 0;
+        while (i < hunks.size()) {
+            // Hunks closer than twice the context share one block
+            int j = i + 1;
+            while (j < hunks.size() && hunks.get(j).aStart - hunks.get(j - 1).aEnd <= 2 * CONTEXT) {
+                j += 1;
+            }
+            Hunk first = hunks.get(i);
+            Hunk last = hunks.get(j - 1);
+            int aFrom = Math.max(0, first.aStart - CONTEXT);
+            int aTo = Math.min(aLines.size(), last.aEnd + CONTEXT);
+            int bFrom = first.bStart - (first.aStart - aFrom);
+            int bTo = last.bEnd + (aTo - last.aEnd);
+            out.append("@@ -").append(range(aFrom, aTo - aFrom))
+                    .append(" +").append(range(bFrom, bTo - bFrom)).append(" @@\n");
+            int pos = aFrom;
+            for (int k = i; k < j; k++) {
+                Hunk h = hunks.get(k);
+                appendLines(out, ' ', aLines, pos, h.aStart);
+                appendLines(out, '-', aLines, h.aStart, h.aEnd);
+                appendLines(out, '+', bLines, h.bStart, h.bEnd);
+                pos = h.aEnd;
+            }
+            appendLines(out, ' ', aLines, pos, aTo);
+            i = j;
+        }
+        return out.toString();
+    }
+
+    /** Return the range of COUNT lines from 0-based line START, as written
+     *  in a hunk header. */
+    private static String range(int start, int count) {
+        if (count == 1) {
+            return String.valueOf(start + 1);
+        }
+        return (count == 0 ? start : start + 1) + "," + count;
+    }
+
+    /** Append LINES[FROM, TO) to OUT, each preceded by MARK. */
+    private static void appendLines(StringBuilder out, char mark, List<String> lines,
+                                    int from, int to) {
+        for (int i = from; i < to; i++) {
+            String line = lines.get(i);
+            out.append(mark).append(line);
+            if (!line.endsWith("\n")) {
+                out.append("\n\\ No newline at end of file\n");
+            }
+        }
+    }
+
+    /** Return true iff CONTENTS look binary, i.e. have a NUL byte early on. */
+    private static boolean isBinary(byte[] contents) {
+        for (int i = 0; i < Math.min(contents.length, 8000); i++) {
+            if (contents[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** The outcome of a three-way merge. */
+    static class Merged {
+        final byte[] contents;
+        final boolean conflict;
+
+        Merged(byte[] contents, boolean conflict) {
+            this.contents = contents;
+            this.conflict = conflict;
+        }
+    }
+
+    /**
+     * Merge OURS and THEIRS, two versions of the common ancestor BASE, line
+     * by line (diff3).  Changes that touch different parts of BASE are both
+     * taken; where the changes of the two sides overlap or are adjacent and
+     * differ, both versions are written between conflict markers.
+     */
+    static Merged merge3(byte[] base, byte[] ours, byte[] theirs) {
+        Lines interner = new Lines();
+        List<String> baseLines = split(base);
+        List<String> ourLines = split(ours);
+        List<String> theirLines = split(theirs);
+        int[] o = interner.intern(baseLines);
+        List<Hunk> left = diff(o, interner.intern(ourLines));
+        List<Hunk> right = diff(o, interner.intern(theirLines));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        boolean conflict = false;
+        int pos = 0;
+        // Line offsets of each side relative to BASE, before the current region
+        int leftShift = 0;
+        int rightShift = 0;
+        int i = 0;
+        int j = 0;
+        while (i < left.size() || j < right.size()) {
+            // Start a region at the next hunk of either side, and grow it
+            // while a hunk of either side overlaps or touches it
+            boolean takeLeft = j == right.size()
+                    || (i < left.size() && left.get(i).aStart <= right.get(j).aStart);
+            Hunk first = takeLeft ? left.get(i) : right.get(j);
+            int start = first.aStart;
+            int end = first.aEnd;
+            int li = i;
+            int ri = j;
+            boolean grown = true;
+            while (grown) {
+                grown = false;
+                if (li < left.size() && left.get(li).aStart <= end) {
+                    end = Math.max(end, left.get(li++).aEnd);
+                    grown = true;
+                }
+                if (ri < right.size() && right.get(ri).aStart <= end) {
+                    end = Math.max(end, right.get(ri++).aEnd);
+                    grown = true;
+                }
+            }
+
+            append(out, baseLines, pos, start);
+            int[] ourRange = range(left, i, li, start, end, leftShift);
+            int[] theirRange = range(right, j, ri, start, end, rightShift);
+            List<String> ourPart = ourLines.subList(ourRange[0], ourRange[1]);
+            List<String> theirPart = theirLines.subList(theirRange[0], theirRange[1]);
+            if (li == i) {
+                append(out, theirPart);
+            } else if (ri == j || ourPart.equals(theirPart)) {
+                append(out, ourPart);
+            } else {
+                conflict = true;
+                out.writeBytes("<<<<<<< HEAD\n".getBytes(StandardCharsets.UTF_8));
+                append(out, ourPart);
+                out.writeBytes("=======\n".getBytes(StandardCharsets.UTF_8));
+                append(out, theirPart);
+                out.writeBytes(">>>>>>>\n".getBytes(StandardCharsets.UTF_8));
+            }
+            leftShift = ourRange[1] - end;
+            rightShift = theirRange[1] - end;
+            pos = end;
+            i = li;
+            j = ri;
+        }
+        append(out, baseLines, pos, baseLines.size());
+        return new Merged(out.toByteArray(), conflict);
+    }
+
+    /** Return the range of lines, on the side whose hunks against BASE are
+     *  HUNKS, that corresponds to BASE lines [START, END), given the hunks
+     *  [FROM, TO) inside that region and the side's offset SHIFT before it. */
+    private static int[] range(List<Hunk> hunks, int from, int to, int start, int end,
+                               int shift) {
+        if (from == to) {
+            return new int[] {start + shift, end + shift};
+        }
+        Hunk first = hunks.get(from);
+        Hunk last = hunks.get(to - 1);
+        return new int[] {first.bStart - (first.aStart - start), last.bEnd + (end - last.aEnd)};
+    }
+
+    private static void append(ByteArrayOutputStream out, List<String> lines, int from, int to) {
+        append(out, lines.subList(from, to));
+    }
+
+    private static void append(ByteArrayOutputStream out, List<String> lines) {
+        for (String line : lines) {
+            out.writeBytes(line.getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+}
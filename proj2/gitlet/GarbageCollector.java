@@ -0,0 +1,234 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static gitlet.Constants.*;
+import static gitlet.Utils.*;
+
+/** The gc command: delete every object that can no longer be reached.
+ *
+ *  Objects are reachable from the roots, the commits the branches point
+ *  to or have pointed to (their reflogs, see Refs), the current head and
+ *  the blobs staged for addition, through the
+ *  parents of commits, the root trees of commits and the entries of trees.
+ *  Everything else (commits of deleted branches, blobs added and replaced
+ *  before a commit, the losing sides of merges) is garbage.
+ *
+ *  Mark: every commit, tree and blob of the repository, loose or packed,
+ *  is given a number, and marks are bits over these numbers (see Marks).
+ *  The reachable commits are found by walking the commit graph, which
+ *  reads no objects; their trees are then walked by several threads at
+ *  once.  A bit is set with a compare-and-set, and the thread that sets
+ *  the bit of a tree is the one that walks it, so no tree is read twice
+ *  and a subtree shared by many commits is walked once.
+ *
+ *  Sweep: the commit graph and the commit indexes forget the garbage
+ *  commits first, so nothing refers to a commit that is gone; then loose
+ *  garbage is deleted and the pack is rewritten without its garbage.
+ *
+ *  @author Mingqian Yu
+ */
+class GarbageCollector {
+
+    /** Number of threads walking trees during the mark phase. */
+    private static final int MARK_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /** A set of object numbers that can be added to from several threads. */
+    private static class Marks {
+        private final AtomicLongArray words;
+
+        Marks(int size) {
+            words = new AtomicLongArray((size + 63) >>> 6);
+        }
+
+        /** Mark N, and return true iff it was not marked already. */
+        boolean set(int n) {
+            int w = n >>> 6;
+            long bit = 1L << n;
+            while (true) {
+                long old = words.get(w);
+                if ((old & bit) != 0) {
+                    return false;
+                }
+                if (words.compareAndSet(w, old, old | bit)) {
+                    return true;
+                }
+            }
+        }
+
+        /** Return true iff N is marked. */
+        boolean get(int n) {
+            return (words.get(n >>> 6) & (1L << n)) != 0;
+        }
+    }
+
+    /** The number of each commit, tree and blob, by id.  Commits are
+     *  numbered first, then trees, then blobs. */
+    private final Map<String, Integer> commits;
+    private final Map<String, Integer> trees;
+    private final Map<String, Integer> blobs;
+    private final Marks marks;
+
+    GarbageCollector() {
+        commits = number(COMMITS_DIR, 0);
+        trees = number(TREES_DIR, commits.size());
+        blobs = number(BLOBS_DIR, commits.size() + trees.size());
+        marks = new Marks(commits.size() + trees.size() + blobs.size());
+    }
+
+    /** Return the ids of the objects in DIR, numbered from FIRST. */
+    private static Map<String, Integer> number(File dir, int first) {
+        List<String> ids = ObjectStore.list(dir);
+        Map<String, Integer> numbers = new HashMap<>(2 * ids.size());
+        for (String id : ids) {
+            numbers.put(id, first + numbers.size());
+        }
+        return numbers;
+    }
+
+    /**
+     * Delete every object not reachable from ROOTCOMMITS and ROOTBLOBS.
+     * @return {objects deleted, bytes reclaimed}
+     */
+    long[] collect(Collection<String> rootCommits, Collection<String> rootBlobs) {
+        List<String> live = markCommits(rootCommits);
+        for (String blob : rootBlobs) {
+            mark(blobs, blob);
+        }
+        markTrees(live);
+        return sweep();
+    }
+
+    /** Mark the commits reachable from ROOTS and return them. */
+    private List<String> markCommits(Collection<String> roots) {
+        CommitGraph graph = CommitGraph.of(GITLET_DIR);
+        List<String> live = new ArrayList<>();
+        Deque<String> queue = new ArrayDeque<>(roots);
+        while (!queue.isEmpty()) {
+            String id = queue.poll();
+            if (!mark(commits, id)) {
+                continue;
+            }
+            live.add(id);
+            String first = graph.firstParent(id);
+            String second = graph.secondParent(id);
+            if (first != null) {
+                queue.add(first);
+            }
+            if (second != null) {
+                queue.add(second);
+            }
+        }
+        return live;
+    }
+
+    /** Mark the trees and blobs of the commits LIVE, spreading the commits
+     *  over MARK_THREADS threads. */
+    private void markTrees(List<String> live) {
+        int threads = Math.max(1, Math.min(MARK_THREADS, live.size()));
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            List<String> slice = live.subList(
+                    t * live.size() / threads, (t + 1) * live.size() / threads);
+            tasks.add(() -> {
+                for (String id : slice) {
+                    markTree(Commit.decode(ObjectStore.read(COMMITS_DIR, id)).getTreeID());
+                }
+                return null;
+            });
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Void> done : pool.invokeAll(tasks)) {
+                done.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw error("Garbage collection interrupted.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalArgumentException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Mark the tree ROOT and everything below it that no other thread
+     *  has marked yet. */
+    private void markTree(String root) {
+        Deque<String> pending = new ArrayDeque<>();
+        List<String> files = new ArrayList<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            String id = pending.pop();
+            if (!mark(trees, id)) {
+                continue;
+            }
+            files.clear();
+            Tree.children(ObjectStore.read(TREES_DIR, id), pending, files);
+            for (String blob : files) {
+                mark(blobs, blob);
+            }
+        }
+    }
+
+    /** Mark the object ID numbered in NUMBERS, and return true iff it exists
+     *  and was not marked already. */
+    private boolean mark(Map<String, Integer> numbers, String id) {
+        Integer n = numbers.get(id);
+        return n != null && marks.set(n);
+    }
+
+    /** Return true iff the object ID numbered in NUMBERS is marked. */
+    private boolean isMarked(Map<String, Integer> numbers, String id) {
+        Integer n = numbers.get(id);
+        return n != null && marks.get(n);
+    }
+
+    /**
+     * Delete every object that is not marked.
+     * @return {objects deleted, bytes reclaimed}
+     */
+    private long[] sweep() {
+        CommitGraph.of(GITLET_DIR).retain(id -> isMarked(commits, id));
+        CommitIndex.of(GITLET_DIR).retain(id -> isMarked(commits, id));
+
+        long objects = 0;
+        long bytes = 0;
+        File[] dirs = {COMMITS_DIR, TREES_DIR, BLOBS_DIR};
+        List<Map<String, Integer>> numbering = List.of(commits, trees, blobs);
+        for (int k = 0; k < dirs.length; k++) {
+            for (int n : numbering.get(k).values()) {
+                if (!marks.get(n)) {
+                    objects += 1;
+                }
+            }
+            List<String> garbage = new ArrayList<>();
+            for (String id : ObjectStore.listLoose(dirs[k])) {
+                if (!isMarked(numbering.get(k), id)) {
+                    garbage.add(id);
+                    bytes += ObjectStore.file(dirs[k], id).length();
+                }
+            }
+            ObjectStore.deleteLoose(dirs[k], garbage);
+        }
+        bytes += Pack.of(GITLET_DIR).retain((kind, id) -> isMarked(
+                kind == Pack.COMMIT ? commits : kind == Pack.TREE ? trees : blobs, id));
+        return new long[] {objects, bytes};
+    }
+}
@@ -0,0 +1,156 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** A stat cache over the working directory.
+ *
+ *  For every path gitlet has hashed or written it remembers the file's
+ *  size, modification time and inode together with the id of the blob the
+ *  file held at that moment.  As long as a file's stat data is unchanged
+ *  its blob id can be taken from the cache instead of reading and hashing
+ *  the whole file again.
+ *
+ *  Like git's index this has to guard against "racily clean" files: a file
+ *  modified in the same timestamp tick as it was recorded still looks
+ *  unchanged.  Entries whose mtime is not strictly older than the time the
+ *  cache was last saved are therefore never trusted.
+ *
+ *  @author Mingqian Yu
+ */
+class Index {
+
+    /** The stat data and blob id recorded for one path. */
+    private static class Entry {
+        final long size;
+        final long mtime;
+        final long inode;
+        final String blob;
+
+        Entry(long size, long mtime, long inode, String blob) {
+            this.size = size;
+            this.mtime = mtime;
+            this.inode = inode;
+            this.blob = blob;
+        }
+
+        boolean matches(Entry stat) {
+            return size == stat.size && mtime == stat.mtime && inode == stat.inode;
+        }
+    }
+
+    /** Recorded entries, keyed by file name. */
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /** Modification time, in nanoseconds, of the saved cache this was loaded from. */
+    private long savedAt = Long.MIN_VALUE;
+
+    /** Return the blob id recorded for FILENAME, whose file is FILE, if its
+     *  stat data says it cannot have changed since; otherwise null. */
+    String cachedBlob(String filename, File file) {
+        Entry entry = entries.get(filename);
+        if (entry == null || entry.mtime >= savedAt) {
+            return null;
+        }
+        Entry stat = stat(file, null);
+        return stat != null && entry.matches(stat) ? entry.blob : null;
+    }
+
+    /** Return the blob id of the current contents of FILE, named FILENAME,
+     *  using the cache when possible and recording the result otherwise.
+     *  Returns null if FILE does not exist. */
+    String blobOf(String filename, File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        String blob = cachedBlob(filename, file);
+        if (blob == null) {
+            blob = Blob.hash(file);
+            record(filename, file, blob);
+        }
+        return blob;
+    }
+
+    /** Record that FILE, named FILENAME, currently holds the blob BLOB. */
+    void record(String filename, File file, String blob) {
+        Entry stat = stat(file, blob);
+        if (stat == null) {
+            entries.remove(filename);
+        } else {
+            entries.put(filename, stat);
+        }
+    }
+
+    /** Forget everything recorded about FILENAME. */
+    void remove(String filename) {
+        entries.remove(filename);
+    }
+
+    /** Return the stat data of FILE paired with BLOB, or null if FILE
+     *  cannot be stat'ed. */
+    private static Entry stat(File file, String blob) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(
+                    file.toPath(), BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (!attrs.isRegularFile()) {
+                return null;
+            }
+            long mtime = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+            return new Entry(attrs.size(), mtime, inode(file), blob);
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+
+    /** Return the inode number of FILE, or 0 where the platform has none. */
+    private static long inode(File file) {
+        try {
+            Object ino = Files.getAttribute(file.toPath(), "unix:ino", LinkOption.NOFOLLOW_LINKS);
+            return ino instanceof Long ? (Long) ino : 0;
+        } catch (UnsupportedOperationException | IllegalArgumentException | IOException e) {
+            return 0;
+        }
+    }
+
+    /** Append this cache to OUT. */
+    void encode(Codec.Writer out) {
+        out.writeVarint(entries.size());
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            out.writeString(e.getKey()).writeId(entry.blob);
+            out.writeVarint(entry.size).writeVarint(entry.mtime).writeVarint(entry.inode);
+        }
+    }
+
+    /** Read a cache written by encode() from IN.  SAVEDFILE is the file it
+     *  was saved in, whose mtime bounds which entries can be trusted. */
+    static Index decode(Codec.Reader in, File savedFile) {
+        Index index = new Index();
+        int n = (int) in.readVarint();
+        for (int i = 0; i < n; i++) {
+            String filename = in.readString();
+            String blob = in.readId();
+            index.entries.put(filename,
+                    new Entry(in.readVarint(), in.readVarint(), in.readVarint(), blob));
+        }
+        index.saved(savedFile);
+        return index;
+    }
+
+    /** Note that this cache was just loaded from or saved to SAVEDFILE, so
+     *  that entries older than it can be trusted.  A cache kept in memory
+     *  between commands is not decoded again, so each save must call this. */
+    void saved(File savedFile) {
+        try {
+            savedAt = Files.getLastModifiedTime(savedFile.toPath()).to(TimeUnit.NANOSECONDS);
+        } catch (IOException excp) {
+            savedAt = Long.MIN_VALUE;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import static gitlet.Utils.*;
+
+/** A write-ahead journal making each command's updates all-or-nothing.
+ *
+ *  Objects (commits, trees, blobs) are named by their contents, so writing
+ *  one early is harmless: until a ref points at it, nobody sees it.  What
+ *  must change together is the mutable state, the branch files and the
+ *  saved Repository, and those are never written directly.  Instead a
+ *  command stages them here, and commit():
+ *
+ *    1. fsyncs the objects written during the command, in one batch;
+ *    2. writes GITLET_DIR/journal, "GJNL", a version and every staged
+ *       update as [path][kind][contents if WRITE][source path if RENAME]
+ *       (see Codec), followed by a CRC-32 of all that, and fsyncs it: this
+ *       is the one durable write that commits the command;
+ *    3. applies each update by writing GITLET_DIR/journal-apply.tmp and
+ *       renaming it over the target, which is atomic.  The temporary file
+ *       is not named after its target, so that no branch name (see Refs)
+ *       can collide with it.  Each file is fsynced before its rename, and
+ *       every directory an update renamed into or deleted from is fsynced
+ *       once all are applied;
+ *    4. deletes the journal, which is only safe once step 3 is durable.
+ *
+ *  Files too large to hold in memory (a rewritten pack, say) are written
+ *  aside by the caller, noted with written(), and staged as a RENAME of that
+ *  file over the target, so step 1 makes them durable and step 3 only moves
+ *  them.  A RENAME whose source is gone was already applied.
+ *
+ *  A crash before step 2 completes leaves a missing or torn journal and the
+ *  old state; a crash after leaves a complete journal, which recover()
+ *  replays on the next command.  Replaying is idempotent, so a crash during
+ *  recovery is harmless too.
+ *
+ *  @author Mingqian Yu
+ */
+class Journal {
+
+    private static final String MAGIC = "GJNL";
+    private static final int VERSION = 2;
+    private static final int CRC_BYTES = 4;
+    /** Update kinds. */
+    private static final byte DELETE = 0;
+    private static final byte WRITE = 1;
+    private static final byte RENAME = 2;
+    /** The file each update is written to before it is renamed into place. */
+    private static final String APPLY_TMP = "journal-apply.tmp";
+
+    /** Open journals, keyed by the path of the gitlet directory holding them. */
+    private static final Map<String, Journal> OPEN = new HashMap<>();
+
+    /** The gitlet directory and its journal file. */
+    private final File gitletDir;
+    private final File file;
+    /** Staged updates, keyed by target file. */
+    private final Map<File, Update> updates = new LinkedHashMap<>();
+    /** Objects written since the last commit, still to be fsynced. */
+    private final List<File> unsynced = new ArrayList<>();
+
+    /** A staged update of one file: deleting it, replacing its contents
+     *  with CONTENTS, or moving SOURCE over it. */
+    private static class Update {
+        final byte kind;
+        final byte[] contents;
+        final File source;
+
+        Update(byte kind, byte[] contents, File source) {
+            this.kind = kind;
+            this.contents = contents;
+            this.source = source;
+        }
+    }
+
+    private Journal(File gitletDir) {
+        this.gitletDir = gitletDir;
+        this.file = join(gitletDir, "journal");
+    }
+
+    /** Return the journal of the repository whose gitlet directory is GITLETDIR. */
+    static Journal of(File gitletDir) {
+        return OPEN.computeIfAbsent(gitletDir.getAbsolutePath(), k -> new Journal(gitletDir));
+    }
+
+    /** Stage replacing the contents of TARGET, a file under the gitlet
+     *  directory, with CONTENTS (a String or byte array), or deleting it if
+     *  CONTENTS is null. */
+    void write(File target, Object contents) {
+        byte[] bytes = contents instanceof String
+                ? ((String) contents).getBytes(StandardCharsets.UTF_8)
+                : (byte[]) contents;
+        updates.put(target.getAbsoluteFile(),
+                bytes == null ? new Update(DELETE, null, null) : new Update(WRITE, bytes, null));
+    }
+
+    /** Stage moving SOURCE, a file under the gitlet directory already noted
+     *  with written(), over TARGET. */
+    void rename(File source, File target) {
+        updates.put(target.getAbsoluteFile(), new Update(RENAME, null, source.getAbsoluteFile()));
+    }
+
+    /** Return the contents TARGET will have once the staged updates are
+     *  applied, or null if it will not exist. */
+    byte[] read(File target) {
+        File key = target.getAbsoluteFile();
+        if (updates.containsKey(key)) {
+            Update update = updates.get(key);
+            return update.kind == RENAME ? readContents(update.source) : update.contents;
+        }
+        return target.isFile() ? readContents(target) : null;
+    }
+
+    /** Note that the object file OBJECT was written, to be fsynced by the
+     *  next commit(). */
+    synchronized void written(File object) {
+        unsynced.add(object);
+    }
+
+    /** Make the staged updates durable and apply them (see above). */
+    void commit() {
+        synchronized (this) {
+            for (File object : unsynced) {
+                force(object);
+            }
+            unsynced.clear();
+        }
+        if (updates.isEmpty()) {
+            return;
+        }
+        Codec.Writer out = new Codec.Writer(MAGIC, VERSION);
+        out.writeVarint(updates.size());
+        for (Map.Entry<File, Update> entry : updates.entrySet()) {
+            Update update = entry.getValue();
+            out.writeString(relativePath(entry.getKey()));
+            out.writeByte(update.kind);
+            if (update.kind == WRITE) {
+                out.writeBytes(update.contents);
+            } else if (update.kind == RENAME) {
+                out.writeString(relativePath(update.source));
+            }
+        }
+        byte[] body = out.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(body);
+
+        File tmp = join(gitletDir, "journal.tmp");
+        try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(body));
+            channel.write(ByteBuffer.allocate(CRC_BYTES).putInt(0, (int) crc.getValue()));
+            channel.force(true);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        move(tmp, file);
+        force(gitletDir);
+
+        apply(gitletDir, updates);
+        updates.clear();
+        file.delete();
+    }
+
+    /** Drop the staged updates of a command that failed before saving. */
+    void abort() {
+        updates.clear();
+    }
+
+    /** Finish the command that was interrupted after committing the journal
+     *  in GITLETDIR, if any, and discard any journal that was never committed. */
+    static void recover(File gitletDir) {
+        join(gitletDir, "journal.tmp").delete();
+        join(gitletDir, APPLY_TMP).delete();
+        File file = join(gitletDir, "journal");
+        if (!file.isFile()) {
+            return;
+        }
+        Map<File, Update> updates = decode(gitletDir, readContents(file));
+        if (updates != null) {
+            apply(gitletDir, updates);
+        }
+        file.delete();
+    }
+
+    /** Return the updates in the journal DATA of GITLETDIR, or null if it is torn. */
+    private static Map<File, Update> decode(File gitletDir, byte[] data) {
+        if (data.length < CRC_BYTES) {
+            return null;
+        }
+        int length = data.length - CRC_BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        if ((int) crc.getValue() != ByteBuffer.wrap(data, length, CRC_BYTES).getInt()) {
+            return null;
+        }
+        Codec.Reader in = new Codec.Reader(Arrays.copyOf(data, length), MAGIC);
+        if (in.version() != VERSION) {
+            throw new IllegalArgumentException("unsupported journal version " + in.version());
+        }
+        Map<File, Update> updates = new LinkedHashMap<>();
+        int n = (int) in.readVarint();
+        for (int i = 0; i < n; i++) {
+            File target = join(gitletDir, in.readString());
+            byte kind = (byte) in.readByte();
+            updates.put(target, new Update(kind, kind == WRITE ? in.readBytes() : null,
+                    kind == RENAME ? join(gitletDir, in.readString()) : null));
+        }
+        return updates;
+    }
+
+    /** Apply UPDATES to files under GITLETDIR, each one atomically, and
+     *  make them durable. */
+    private static void apply(File gitletDir, Map<File, Update> updates) {
+        File tmp = join(gitletDir, APPLY_TMP);
+        Set<File> dirs = new LinkedHashSet<>();
+        for (Map.Entry<File, Update> entry : updates.entrySet()) {
+            File target = entry.getKey();
+            Update update = entry.getValue();
+            dirs.add(target.getParentFile());
+            if (update.kind == DELETE) {
+                target.delete();
+                continue;
+            }
+            if (update.kind == RENAME) {
+                if (update.source.isFile()) {
+                    dirs.add(update.source.getParentFile());
+                    move(update.source, target);
+                }
+                continue;
+            }
+            // A directory made here must itself be recorded in its parent
+            for (File dir = target.getParentFile(); !dir.exists(); dir = dir.getParentFile()) {
+                dirs.add(dir.getParentFile());
+            }
+            target.getParentFile().mkdirs();
+            writeContents(tmp, (Object) update.contents);
+            force(tmp);
+            move(tmp, target);
+        }
+        for (File dir : dirs) {
+            force(dir);
+        }
+    }
+
+    /** Return the path of FILE relative to the gitlet directory.  Paths are
+     *  made canonical first, so that no ".." or link can take an update
+     *  outside it. */
+    private String relativePath(File file) {
+        String base = canonicalPath(gitletDir) + File.separator;
+        String path = canonicalPath(file);
+        if (!path.startsWith(base)) {
+            throw new IllegalArgumentException("not under " + gitletDir + ": " + path);
+        }
+        return path.substring(base.length());
+    }
+
+    /** Return the canonical path of FILE, which need not exist. */
+    private static String canonicalPath(File file) {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Rename FROM over TO atomically. */
+    private static void move(File from, File to) {
+        try {
+            Files.move(from.toPath(), to.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Flush FILE, or the entries of the directory FILE, to disk.  Platforms
+     *  that cannot open directories only get their files flushed. */
+    private static void force(File file) {
+        if (!file.exists()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException excp) {
+            if (!file.isDirectory()) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+    }
+}
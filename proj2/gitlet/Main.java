@@ -40,10 +40,21 @@ public class Main {
     }
 
     public static void main(String[] args) {
+        args = Trace.options(args);
         if (args.length == 0) {
             System.out.println("Please enter a command.");
             return;
         }
+        Trace.begin(args[0]);
+        try {
+            run(args);
+        } finally {
+            Trace.end();
+        }
+    }
+
+    /** Run the command ARGS, which are not empty. */
+    private static void run(String[] args) {
         String firstArg = args[0];
         // TODO: If a user inputs a command that requires being in an initialized Gitlet working directory
         //  (i.e., one containing a .gitlet subdirectory), but is not in such a directory,
@@ -63,7 +74,7 @@ public class Main {
             }
             case "add" -> {
                 try {
-                    validateArgs(args, 2, firstArg + "[-_.A-Za-z0-9]+");
+                    validateArgs(args, 2, firstArg + "[-_./A-Za-z0-9]+");
                     repository = Repository.load();
                     repository.add(args[1]);
                 } catch (GitletException e) {
@@ -117,7 +128,7 @@ public class Main {
             }
             case "rm" -> {
                 try {
-                    validateArgs(args, 2, firstArg + "[-_.A-Za-z0-9]+");
+                    validateArgs(args, 2, firstArg + "[-_./A-Za-z0-9]+");
                     repository = Repository.load();
                     repository.rm(args[1]);
                 } catch (GitletException e) {
@@ -127,7 +138,7 @@ public class Main {
             // TODO: Refactor this code, has too many cases
             case "checkout" -> {
                 try {
-                    validateArgs(args, 0, firstArg + "\\s*[A-Fa-f0-9]*\\s*[--]*\\s*[-_.A-Za-z0-9\\s]+");
+                    validateArgs(args, 0, firstArg + "\\s*[A-Fa-f0-9]*\\s*[--]*\\s*[-_./A-Za-z0-9\\s]+");
                     repository = Repository.load();
                 }
                 catch (GitletException e) {
@@ -167,7 +178,7 @@ public class Main {
             }
             case "rm-branch" -> {
                 try {
-                    validateArgs(args, 2, firstArg + "[-_.A-Za-z0-9]+");
+                    validateArgs(args, 2, firstArg + "[-_./A-Za-z0-9]+");
                     repository = Repository.load();
                     repository.rmBranch(args[1]);
                 } catch (GitletException e) {
@@ -185,13 +196,98 @@ public class Main {
             }
             case "merge" -> {
                 try {
-                    validateArgs(args, 2, firstArg + "[-_.A-Za-z0-9]+");
+                    validateArgs(args, 2, firstArg + "[-_./A-Za-z0-9]+");
                     repository = Repository.load();
                     repository.merge(args[1]);
                 } catch (GitletException e) {
                     Utils.message(e.getMessage());
                 }
             }
+            case "diff" -> {
+                try {
+                    validateArgs(args, 0, firstArg + "[A-Fa-f0-9]*");
+                    if (args.length > 3) {
+                        throw Utils.error(INCORRECT_OPERANDS);
+                    }
+                    repository = Repository.load();
+                    repository.diff(args.length > 1 ? args[1] : null,
+                            args.length > 2 ? args[2] : null);
+                } catch (GitletException e) {
+                    Utils.message(e.getMessage());
+                }
+            }
+            case "serve" -> {
+                try {
+                    validateArgs(args, 1, firstArg);
+                    Repository.load();
+                    Daemon.serve();
+                } catch (GitletException e) {
+                    Utils.message(e.getMessage());
+                }
+            }
+            case "repack" -> {
+                try {
+                    validateArgs(args, 1, firstArg);
+                    repository = Repository.load();
+                    repository.repack();
+                } catch (GitletException e) {
+                    Utils.message(e.getMessage());
+                }
+            }
+            case "gc" -> {
+                try {
+                    validateArgs(args, 1, firstArg);
+                    repository = Repository.load();
+                    repository.gc();
+                } catch (GitletException e) {
+                    Utils.message(e.getMessage());
+                }
+            }
+            case "add-remote" -> {
+                try {
+                    validateArgs(args, 3, firstArg + "[-_.A-Za-z0-9]+[-_./A-Za-z0-9]+");
+                    repository = Repository.load();
+                    repository.addRemote(args[1], args[2]);
+                } catch (GitletException e) {
+                    Utils.message(e.getMessage());
+                }
+            }
+            case "rm-remote" -> {
+                try {
+                    validateArgs(args, 2, firstArg + "[-_.A-Za-z0-9]+");
+                    repository = Repository.load();
+                    repository.rmRemote(args[1]);
+                } catch (GitletException e) {
+                    Utils.message(e.getMessage());
+                }
+            }
+            case "fetch" -> {
+                try {
+                    validateArgs(args, 3, firstArg + "[-_.A-Za-z0-9]+");
+                    repository = Repository.load();
+                    repository.fetch(args[1], args[2]);
+                } catch (GitletException e) {
+                    Utils.message(e.getMessage());
+                }
+            }
+            case "push" -> {
+                try {
+                    validateArgs(args, 3, firstArg + "[-_.A-Za-z0-9]+");
+                    repository = Repository.load();
+                    repository.push(args[1], args[2]);
+                } catch (GitletException e) {
+                    Utils.message(e.getMessage());
+                }
+            }
+            case "pull" -> {
+                try {
+                    validateArgs(args, 3, firstArg + "[-_.A-Za-z0-9]+");
+                    repository = Repository.load();
+                    repository.pull(args[1], args[2]);
+                } catch (GitletException e) {
+                    Utils.message(e.getMessage());
+                }
+            }
             default -> Utils.message("No command with that name exists.");
         }
         Repository.save(repository);
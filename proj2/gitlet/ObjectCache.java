@@ -0,0 +1,95 @@
+package gitlet;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/** A bounded least-recently-used cache of decoded objects, keyed by id.
+ *
+ *  Every value has a weight, roughly the bytes it takes when it is cached,
+ *  and the cache evicts least recently used values until the total weight
+ *  is within its capacity.  Values heavier than an eighth of the capacity
+ *  are never cached, so one huge blob cannot flush everything else.
+ *
+ *  Objects are named by their contents and never rewritten, so a cached
+ *  value never goes stale.  Values are shared: callers must not modify
+ *  them.
+ *
+ *  Hit and miss counts are reported by Repository.dump().
+ *
+ *  @author Mingqian Yu
+ */
+class ObjectCache<V> {
+
+    /** Name of this cache, for reports. */
+    private final String name;
+    /** Maximum total weight of the cached values. */
+    private final long capacity;
+    /** Weight of a value. */
+    private final ToLongFunction<V> weigher;
+
+    /** A cached value and the weight it was cached with. */
+    private static class Entry<V> {
+        final V value;
+        final long weight;
+
+        Entry(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /** Cached values, least recently used first. */
+    private final LinkedHashMap<String, Entry<V>> values = new LinkedHashMap<>(16, 0.75f, true);
+    /** Total weight of the cached values. */
+    private long weight;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    ObjectCache(String name, long capacity, ToLongFunction<V> weigher) {
+        this.name = name;
+        this.capacity = capacity;
+        this.weigher = weigher;
+    }
+
+    /** Return the value cached for ID, or null, counting a hit or a miss. */
+    synchronized V get(String id) {
+        Entry<V> entry = values.get(id);
+        if (entry == null) {
+            misses += 1;
+            return null;
+        }
+        hits += 1;
+        return entry.value;
+    }
+
+    /** Cache VALUE for ID, replacing any previous value, and evict least
+     *  recently used values as needed. */
+    synchronized void put(String id, V value) {
+        long w = weigher.applyAsLong(value);
+        Entry<V> old = values.remove(id);
+        if (old != null) {
+            weight -= old.weight;
+        }
+        if (w > capacity / 8) {
+            return;
+        }
+        values.put(id, new Entry<>(value, w));
+        weight += w;
+        Iterator<Map.Entry<String, Entry<V>>> it = values.entrySet().iterator();
+        while (weight > capacity && it.hasNext()) {
+            weight -= it.next().getValue().weight;
+            it.remove();
+            evictions += 1;
+        }
+    }
+
+    /** Return a one-line report of the size and hit rate of this cache. */
+    synchronized String stats() {
+        return String.format("%s cache: %d hits, %d misses, %d evictions, %d entries, %d/%d bytes",
+                name, hits, misses, evictions, values.size(), weight, capacity);
+    }
+}
@@ -0,0 +1,81 @@
+package gitlet;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/** Object ids: the codec between the 40-character hex ids gitlet passes
+ *  around and prints and the 20 raw bytes its binary formats store, and
+ *  the SHA-1 digests they are computed with.
+ *
+ *  The codec is table-driven, with no Formatter or parseInt, and is what
+ *  Utils.sha1, Codec, Pack and the other binary formats go through.
+ *
+ *  SHA-1 digests are reused: digest() returns the digest of the calling
+ *  thread, reset, instead of looking one up through the security
+ *  providers for every object hashed.
+ *
+ *  @author Mingqian Yu
+ */
+class ObjectId {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** Value of each hex digit, by character, -1 for non-digits. */
+    private static final byte[] DIGITS = new byte['f' + 1];
+
+    static {
+        Arrays.fill(DIGITS, (byte) -1);
+        for (int i = 0; i < 16; i++) {
+            DIGITS[HEX[i]] = (byte) i;
+            DIGITS[Character.toUpperCase(HEX[i])] = (byte) i;
+        }
+    }
+
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    });
+
+    /** Return the SHA-1 digest of the calling thread, reset.  It is shared
+     *  by everything the thread hashes, so it must be done with before
+     *  anything else is hashed. */
+    static MessageDigest digest() {
+        MessageDigest md = DIGEST.get();
+        md.reset();
+        return md;
+    }
+
+    /** Return the raw bytes of the hex id ID, which may be of any even length. */
+    static byte[] toRaw(String id) {
+        byte[] raw = new byte[id.length() / 2];
+        for (int i = 0; i < raw.length; i++) {
+            int hi = digit(id.charAt(2 * i));
+            int lo = digit(id.charAt(2 * i + 1));
+            if (hi < 0 || lo < 0) {
+                throw new IllegalArgumentException("not a hex id: " + id);
+            }
+            raw[i] = (byte) (hi << 4 | lo);
+        }
+        return raw;
+    }
+
+    /** Return the hex form of the raw bytes RAW. */
+    static String toHex(byte[] raw) {
+        char[] hex = new char[2 * raw.length];
+        for (int i = 0; i < raw.length; i++) {
+            hex[2 * i] = HEX[(raw[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX[raw[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    /** Return the value of the hex digit C, or -1 if it is none. */
+    private static int digit(char c) {
+        return c < DIGITS.length ? DIGITS[c] : -1;
+    }
+
+}
@@ -0,0 +1,177 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static gitlet.Utils.*;
+
+/** Content-addressed storage for gitlet objects (commits, trees and blobs).
+ *
+ *  An object is either loose, in a file of its own, or packed into the
+ *  repository's packfile (see Pack) by the repack command.  Lookups try the
+ *  loose object first, so an object rewritten after it was packed shadows
+ *  its packed copy.
+ *
+ *  Objects are fanned out over subdirectories named after the first two
+ *  hex digits of their id, the same layout as .git/objects:
+ *
+ *      DIR/ab/cdef0123...   holds the object whose id is "abcdef0123..."
+ *
+ *  Keeping every shard small means that resolving an abbreviated id only
+ *  needs a listing of the one shard its first two digits select, instead
+ *  of a scan over every object ever written.
+ *
+ *  @author Mingqian Yu
+ */
+class ObjectStore {
+
+    /** Number of leading hex digits used to name a shard directory. */
+    static final int SHARD_LENGTH = 2;
+
+    /** Return the file under DIR that holds the object with full id ID. */
+    static File file(File dir, String id) {
+        return join(dir, id.substring(0, SHARD_LENGTH), id.substring(SHARD_LENGTH));
+    }
+
+    /** Return true iff DIR holds an object with full id ID. */
+    static boolean contains(File dir, String id) {
+        if (id == null || id.length() != UID_LENGTH) {
+            return false;
+        }
+        return file(dir, id).isFile() || Pack.forObjects(dir).contains(Pack.kindOf(dir), id);
+    }
+
+    /** Write CONTENTS (Strings or byte arrays, as for Utils.writeContents)
+     *  as the object ID in DIR, creating its shard if needed.  The object is
+     *  written to a temporary file and renamed into place, so it is never
+     *  seen half written; it is fsynced by the next Journal commit. */
+    static void write(File dir, String id, Object... contents) {
+        File f = file(dir, id);
+        f.getParentFile().mkdirs();
+        File tmp = null;
+        try {
+            tmp = File.createTempFile("object", ".tmp", dir);
+            writeContents(tmp, contents);
+            Files.move(tmp.toPath(), f.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            if (tmp != null) {
+                tmp.delete();
+            }
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Journal.of(dir.getParentFile()).written(f);
+    }
+
+    /** Return the raw contents of the object ID in DIR.  Throws
+     *  IllegalArgumentException if there is no such object. */
+    static byte[] read(File dir, String id) {
+        File f = file(dir, id);
+        if (!f.isFile()) {
+            byte[] packed = Pack.forObjects(dir).read(Pack.kindOf(dir), id);
+            if (packed != null) {
+                return packed;
+            }
+        }
+        return readContents(f);
+    }
+
+    /** Return the contents of the loose object ID in DIR. */
+    static byte[] readLoose(File dir, String id) {
+        return readContents(file(dir, id));
+    }
+
+    /** Return the full ids of the objects in DIR whose id starts with
+     *  PREFIX, loose or packed, in lexicographic order.  At most LIMIT are
+     *  returned: enough to tell one match from several without listing
+     *  them all. */
+    static List<String> expand(File dir, String prefix, int limit) {
+        TreeSet<String> ids = new TreeSet<>();
+        if (prefix == null || prefix.isEmpty() || prefix.length() > UID_LENGTH) {
+            return new ArrayList<>(ids);
+        }
+        prefix = prefix.toLowerCase();
+        if (prefix.length() < SHARD_LENGTH) {
+            // Too short to pick a shard, fall back to every shard it could be in
+            for (String shard : shards(dir)) {
+                if (shard.startsWith(prefix)) {
+                    expandInShard(dir, shard, "", ids, limit);
+                }
+            }
+        } else {
+            expandInShard(dir, prefix.substring(0, SHARD_LENGTH),
+                    prefix.substring(SHARD_LENGTH), ids, limit);
+        }
+        Pack.forObjects(dir).expand(Pack.kindOf(dir), prefix, ids, limit);
+        return new ArrayList<>(ids);
+    }
+
+    /** Add the ids in shard SHARD of DIR whose remaining digits start with
+     *  REST to IDS, until it holds LIMIT ids. */
+    private static void expandInShard(File dir, String shard, String rest,
+                                      Set<String> ids, int limit) {
+        List<String> names = plainFilenamesIn(join(dir, shard));
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            if (ids.size() >= limit) {
+                return;
+            }
+            if (name.startsWith(rest)) {
+                ids.add(shard + name);
+            }
+        }
+    }
+
+    /** Return the full ids of every object in DIR, loose or packed, in
+     *  lexicographic order. */
+    static List<String> list(File dir) {
+        TreeSet<String> ids = new TreeSet<>(listLoose(dir));
+        ids.addAll(Pack.forObjects(dir).list(Pack.kindOf(dir)));
+        return new ArrayList<>(ids);
+    }
+
+    /** Return the full ids of the loose objects in DIR, in lexicographic order. */
+    static List<String> listLoose(File dir) {
+        List<String> ids = new ArrayList<>();
+        for (String shard : shards(dir)) {
+            List<String> names = plainFilenamesIn(join(dir, shard));
+            if (names != null) {
+                for (String name : names) {
+                    ids.add(shard + name);
+                }
+            }
+        }
+        return ids;
+    }
+
+    /** Delete the loose objects IDS from DIR, and any shard left empty. */
+    static void deleteLoose(File dir, List<String> ids) {
+        for (String id : ids) {
+            File f = file(dir, id);
+            f.delete();
+            // Only succeeds once the shard is empty
+            f.getParentFile().delete();
+        }
+    }
+
+    /** Return the names of the shard directories of DIR, in order. */
+    private static List<String> shards(File dir) {
+        List<String> result = new ArrayList<>();
+        String[] names = dir.list((d, name) ->
+                name.length() == SHARD_LENGTH && new File(d, name).isDirectory());
+        if (names != null) {
+            Arrays.sort(names);
+            result.addAll(Arrays.asList(names));
+        }
+        return result;
+    }
+}
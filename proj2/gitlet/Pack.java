@@ -0,0 +1,599 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiPredicate;
+
+import static gitlet.Utils.*;
+
+/** A packfile: many gitlet objects stored in one append-only file.
+ *
+ *  A pack lives in GITLET_DIR/pack and is made of two files:
+ *
+ *    pack.pack  "PACK", version, then one entry per object, appended in
+ *               the order the objects were packed.  Each entry is
+ *               [kind:1][encoding:1][length:4][baseOffset:8 if delta][data].
+ *               A FULL entry holds the object's bytes, a DELTA entry holds
+ *               a delta (see Delta) against the entry at baseOffset.
+ *    pack.idx   "PIDX", version, count, a 256-entry fan-out table, then
+ *               COUNT fixed-width records [id:20][kind:1][offset:8] sorted
+ *               by id, so an object is found with one binary search.
+ *
+ *  Objects fetched from or pushed to another repository arrive as one
+ *  transfer stream (see Sender) and are appended by receive().
+ *
+ *  Both files are read through memory maps, the pack in windows of WINDOW
+ *  bytes since one map cannot reach past 2 GB; offsets are longs throughout.
+ *  An object that is packed again (one received from a remote while a
+ *  loose copy still waits for repack, for instance) is appended once more
+ *  and the index simply points at the newest copy; both hold the same
+ *  bytes.
+ *
+ *  @author Mingqian Yu
+ */
+class Pack {
+
+    /** Object kinds, as stored in entries and index records. */
+    static final byte COMMIT = 1;
+    static final byte BLOB = 2;
+    static final byte TREE = 3;
+
+    /** Entry encodings. */
+    private static final byte FULL = 0;
+    private static final byte DELTA = 1;
+
+    private static final int VERSION = 1;
+    private static final int PACK_HEADER = 8;
+    private static final int IDX_HEADER = 12 + 256 * 4;
+    private static final int ID_BYTES = 20;
+    private static final int RECORD = ID_BYTES + 1 + 8;
+
+    /** Longest chain of deltas allowed before an object is stored in full. */
+    private static final int MAX_DEPTH = 10;
+    /** Blobs larger than this are never deltified. */
+    private static final int MAX_DELTA_SOURCE = 1 << 24;
+    /** Blobs larger than this stay loose, where they can be streamed. */
+    private static final long MAX_PACKED = 1 << 30;
+    /** Size of the windows the pack is mapped in. */
+    private static final long WINDOW = 1L << 30;
+
+    /** Open packs, keyed by the path of the gitlet directory holding them. */
+    private static final Map<String, Pack> OPEN = new ConcurrentHashMap<>();
+
+    /** The pack and index files of this pack. */
+    private final File packFile;
+    private final File idxFile;
+    /** Mapped contents of the pack, window by window, and of the index, or
+     *  null if there is no pack yet. */
+    private MappedByteBuffer[] pack;
+    private MappedByteBuffer idx;
+    /** Number of records in the index. */
+    private int count;
+    /** Modification time of the index file when it was mapped, 0 if none. */
+    private long idxStamp;
+
+    private Pack(File gitletDir) {
+        File dir = join(gitletDir, "pack");
+        packFile = join(dir, "pack.pack");
+        idxFile = join(dir, "pack.idx");
+        map();
+    }
+
+    /** Return the pack of the repository whose gitlet directory is GITLETDIR. */
+    static Pack of(File gitletDir) {
+        Pack pack = OPEN.computeIfAbsent(gitletDir.getAbsolutePath(), k -> new Pack(gitletDir));
+        // Another process (the CLI next to a server, say) may have repacked
+        if (pack.idxFile.lastModified() != pack.idxStamp) {
+            pack.map();
+        }
+        return pack;
+    }
+
+    /** Return the pack holding the objects of the object directory DIR. */
+    static Pack forObjects(File dir) {
+        return of(dir.getParentFile());
+    }
+
+    /** Return the kind of the objects stored in object directory DIR. */
+    static byte kindOf(File dir) {
+        return switch (dir.getName()) {
+            case "commits" -> COMMIT;
+            case "trees" -> TREE;
+            default -> BLOB;
+        };
+    }
+
+    /** (Re)map the pack and index files, if they exist. */
+    private void map() {
+        pack = null;
+        idx = null;
+        count = 0;
+        idxStamp = idxFile.lastModified();
+        if (!packFile.isFile() || !idxFile.isFile()) {
+            return;
+        }
+        try (FileChannel p = FileChannel.open(packFile.toPath());
+             FileChannel i = FileChannel.open(idxFile.toPath())) {
+            long size = p.size();
+            pack = new MappedByteBuffer[(int) ((size + WINDOW - 1) / WINDOW)];
+            for (int w = 0; w < pack.length; w++) {
+                pack[w] = p.map(FileChannel.MapMode.READ_ONLY, w * WINDOW,
+                        Math.min(WINDOW, size - w * WINDOW));
+            }
+            idx = i.map(FileChannel.MapMode.READ_ONLY, 0, i.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        count = idx.getInt(8);
+    }
+
+    /** Return true iff this pack holds the object ID of kind KIND. */
+    boolean contains(byte kind, String id) {
+        return find(kind, id) >= 0;
+    }
+
+    /** Return the contents of the object ID of kind KIND, or null if it is
+     *  not in this pack. */
+    byte[] read(byte kind, String id) {
+        long offset = find(kind, id);
+        return offset < 0 ? null : readAt(offset);
+    }
+
+    /** Add the ids of kind KIND starting with the lower-case hex PREFIX to
+     *  IDS, until it holds LIMIT ids. */
+    void expand(byte kind, String prefix, Set<String> ids, int limit) {
+        if (idx == null) {
+            return;
+        }
+        int firstByte = prefix.length() >= 2 ? Integer.parseInt(prefix.substring(0, 2), 16) : -1;
+        int lo = firstByte < 0 ? 0 : fanout(firstByte - 1);
+        int hi = firstByte < 0 ? count : fanout(firstByte);
+        for (int r = lo; r < hi && ids.size() < limit; r++) {
+            if (idx.get(IDX_HEADER + r * RECORD + ID_BYTES) != kind) {
+                continue;
+            }
+            String id = idAt(r);
+            if (id.startsWith(prefix)) {
+                ids.add(id);
+            }
+        }
+    }
+
+    /** Return the ids of all objects of kind KIND in this pack, in order. */
+    List<String> list(byte kind) {
+        List<String> ids = new ArrayList<>();
+        for (int r = 0; r < count; r++) {
+            if (idx.get(IDX_HEADER + r * RECORD + ID_BYTES) == kind) {
+                ids.add(idAt(r));
+            }
+        }
+        return ids;
+    }
+
+    /** Return the number of index records whose first id byte is at most B. */
+    private int fanout(int b) {
+        return b < 0 ? 0 : idx.getInt(12 + b * 4);
+    }
+
+    /** Return the hex id of index record R. */
+    private String idAt(int r) {
+        byte[] raw = new byte[ID_BYTES];
+        idx.get(IDX_HEADER + r * RECORD, raw);
+        return ObjectId.toHex(raw);
+    }
+
+    /** Return the pack offset of the object ID of kind KIND, or -1. */
+    private long find(byte kind, String id) {
+        if (idx == null || id == null || id.length() != UID_LENGTH) {
+            return -1;
+        }
+        byte[] key = ObjectId.toRaw(id);
+        int lo = fanout((key[0] & 0xff) - 1);
+        int hi = fanout(key[0] & 0xff) - 1;
+        byte[] probe = new byte[ID_BYTES];
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            idx.get(IDX_HEADER + mid * RECORD, probe);
+            int cmp = compare(probe, key, idx.get(IDX_HEADER + mid * RECORD + ID_BYTES), kind);
+            if (cmp == 0) {
+                return idx.getLong(IDX_HEADER + mid * RECORD + ID_BYTES + 1);
+            } else if (cmp < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return -1;
+    }
+
+    /** Order index records by id, then by kind. */
+    private static int compare(byte[] id1, byte[] id2, byte kind1, byte kind2) {
+        int cmp = Arrays.compareUnsigned(id1, id2);
+        return cmp != 0 ? cmp : Byte.compare(kind1, kind2);
+    }
+
+    /** Copy the bytes of the pack at OFFSET into DST, across windows. */
+    private void get(long offset, byte[] dst) {
+        int done = 0;
+        while (done < dst.length) {
+            long pos = offset + done;
+            MappedByteBuffer window = pack[(int) (pos / WINDOW)];
+            int at = (int) (pos % WINDOW);
+            int n = Math.min(dst.length - done, window.limit() - at);
+            window.get(at, dst, done, n);
+            done += n;
+        }
+    }
+
+    /** Return the LENGTH bytes of the pack at OFFSET. */
+    private ByteBuffer get(long offset, int length) {
+        byte[] bytes = new byte[length];
+        get(offset, bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    /** Return the contents of the entry at OFFSET, resolving deltas. */
+    private byte[] readAt(long offset) {
+        ByteBuffer header = get(offset, 6);
+        byte encoding = header.get(1);
+        int length = header.getInt(2);
+        long pos = offset + 6;
+        long base = 0;
+        if (encoding == DELTA) {
+            base = get(pos, 8).getLong(0);
+            pos += 8;
+        }
+        byte[] data = new byte[length];
+        get(pos, data);
+        return encoding == DELTA ? Delta.apply(readAt(base), data) : data;
+    }
+
+    /** A packed object, as recorded in the index. */
+    private static class Entry {
+        final byte[] id;
+        final byte kind;
+        final long offset;
+        /** Length of the delta chain ending at this entry. */
+        int depth;
+
+        Entry(byte[] id, byte kind, long offset, int depth) {
+            this.id = id;
+            this.kind = kind;
+            this.offset = offset;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * Append every loose commit, tree and blob of this repository to the pack,
+     * rewrite the index and delete the loose copies.  Blobs that are
+     * successive versions of the same file are stored as deltas against
+     * each other when that saves space.
+     * @return {packed objects, objects stored as deltas}
+     */
+    int[] repack(File commitsDir, File treesDir, File blobsDir) {
+        List<String> looseCommits = ObjectStore.listLoose(commitsDir);
+        List<String> looseTrees = ObjectStore.listLoose(treesDir);
+        List<String> looseBlobs = new ArrayList<>(ObjectStore.listLoose(blobsDir));
+        looseBlobs.removeIf(id -> ObjectStore.file(blobsDir, id).length() > MAX_PACKED);
+        if (looseCommits.isEmpty() && looseTrees.isEmpty() && looseBlobs.isEmpty()) {
+            return new int[] {0, 0};
+        }
+
+        Map<String, Entry> entries = entries();
+        int deltas = 0;
+        try (FileChannel out = openForAppend()) {
+            for (String id : looseCommits) {
+                byte[] data = ObjectStore.readLoose(commitsDir, id);
+                entries.put(COMMIT + id, append(out, COMMIT, id, data, null, null));
+            }
+            for (String id : looseTrees) {
+                byte[] data = ObjectStore.readLoose(treesDir, id);
+                entries.put(TREE + id, append(out, TREE, id, data, null, null));
+            }
+            for (List<String> chain : deltaChains(commitsDir, looseBlobs)) {
+                String baseId = null;
+                byte[] base = null;
+                for (String id : chain) {
+                    byte[] data = Blob.read(id);
+                    Entry baseEntry = baseId == null ? null : entries.get(BLOB + baseId);
+                    Entry e = append(out, BLOB, id, data, base, baseEntry);
+                    if (e.depth > 0) {
+                        deltas += 1;
+                    }
+                    entries.put(BLOB + id, e);
+                    baseId = id;
+                    base = data.length > MAX_DELTA_SOURCE ? null : data;
+                }
+            }
+            out.force(true);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+
+        writeIndex(new ArrayList<>(entries.values()));
+        map();
+        ObjectStore.deleteLoose(commitsDir, looseCommits);
+        ObjectStore.deleteLoose(treesDir, looseTrees);
+        ObjectStore.deleteLoose(blobsDir, looseBlobs);
+        return new int[] {looseCommits.size() + looseTrees.size() + looseBlobs.size(), deltas};
+    }
+
+    /** Return the records of the index, keyed by kind and id. */
+    private Map<String, Entry> entries() {
+        Map<String, Entry> entries = new HashMap<>();
+        for (int r = 0; r < count; r++) {
+            byte[] raw = new byte[ID_BYTES];
+            idx.get(IDX_HEADER + r * RECORD, raw);
+            byte kind = idx.get(IDX_HEADER + r * RECORD + ID_BYTES);
+            long offset = idx.getLong(IDX_HEADER + r * RECORD + ID_BYTES + 1);
+            entries.put(kind + ObjectId.toHex(raw), new Entry(raw, kind, offset, 0));
+        }
+        return entries;
+    }
+
+    /** Open the pack file for appending, creating it if needed. */
+    private FileChannel openForAppend() throws IOException {
+        packFile.getParentFile().mkdir();
+        FileChannel out = FileChannel.open(packFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (out.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(PACK_HEADER);
+            header.put("PACK".getBytes()).putInt(VERSION).flip();
+            out.write(header);
+        }
+        return out;
+    }
+
+    /**
+     * Writes a transfer stream: the objects sent from one repository to
+     * another (see Remote), one after the other as [kind:1][id:20]
+     * [length:4][data], ended by a zero kind byte.  The receiving pack
+     * takes the whole stream in with receive().
+     */
+    static class Sender implements Closeable {
+        private final DataOutputStream out;
+
+        Sender(OutputStream out) {
+            this.out = new DataOutputStream(new BufferedOutputStream(out));
+        }
+
+        /** Send the object ID of kind KIND, whose contents are DATA. */
+        void send(byte kind, String id, byte[] data) throws IOException {
+            out.writeByte(kind);
+            out.write(ObjectId.toRaw(id));
+            out.writeInt(data.length);
+            out.write(data);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.writeByte(0);
+            out.close();
+        }
+    }
+
+    /**
+     * Append every object of the transfer stream IN (see Sender) that is not
+     * packed yet to the pack, rewrite the index once for all of them and
+     * return how many were added.  Objects are stored in full.
+     */
+    int receive(InputStream in) {
+        Map<String, Entry> entries = entries();
+        int received = 0;
+        DataInputStream objects = new DataInputStream(new BufferedInputStream(in));
+        try (FileChannel out = openForAppend()) {
+            for (byte kind = objects.readByte(); kind != 0; kind = objects.readByte()) {
+                byte[] raw = new byte[ID_BYTES];
+                objects.readFully(raw);
+                byte[] data = new byte[objects.readInt()];
+                objects.readFully(data);
+                String id = ObjectId.toHex(raw);
+                if (!entries.containsKey(kind + id)) {
+                    entries.put(kind + id, append(out, kind, id, data, null, null));
+                    received += 1;
+                }
+            }
+            out.force(true);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (received > 0) {
+            writeIndex(new ArrayList<>(entries.values()));
+            map();
+        }
+        return received;
+    }
+
+    /**
+     * Rewrite the pack without the objects for which LIVE is false, and
+     * return the number of bytes this freed.  Entries are copied as they
+     * are, except that a delta whose base is dropped is stored in full.
+     * The new pack and index are written next to the old ones, one entry
+     * at a time, and renamed over them together through the journal (see
+     * Journal).
+     */
+    long retain(BiPredicate<Byte, String> live) {
+        if (pack == null) {
+            return 0;
+        }
+        List<Entry> kept = new ArrayList<>();
+        boolean dropped = false;
+        for (Entry e : entries().values()) {
+            if (live.test(e.kind, ObjectId.toHex(e.id))) {
+                kept.add(e);
+            } else {
+                dropped = true;
+            }
+        }
+        if (!dropped) {
+            return 0;
+        }
+        // Bases come before their deltas in the pack
+        kept.sort((a, b) -> Long.compare(a.offset, b.offset));
+        File packTmp = join(packFile.getParentFile(), "pack.pack.tmp");
+        File idxTmp = join(idxFile.getParentFile(), "pack.idx.tmp");
+        Map<Long, Long> moved = new HashMap<>();
+        List<Entry> entries = new ArrayList<>();
+        try (FileChannel out = FileChannel.open(packTmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(PACK_HEADER);
+            header.put("PACK".getBytes()).putInt(VERSION).flip();
+            out.write(header);
+            for (Entry e : kept) {
+                ByteBuffer old = get(e.offset, 6);
+                byte encoding = old.get(1);
+                int length = old.getInt(2);
+                Long base = encoding == DELTA ? moved.get(get(e.offset + 6, 8).getLong(0)) : null;
+                moved.put(e.offset, out.position());
+                entries.add(new Entry(e.id, e.kind, out.position(), 0));
+                byte[] data;
+                if (encoding == FULL || base != null) {
+                    data = new byte[length];
+                    get(e.offset + (encoding == FULL ? 6 : 14), data);
+                } else {
+                    data = readAt(e.offset);
+                    encoding = FULL;
+                }
+                ByteBuffer entry = ByteBuffer.allocate(base != null ? 14 : 6);
+                entry.put(e.kind).put(encoding).putInt(data.length);
+                if (base != null) {
+                    entry.putLong(base);
+                }
+                out.write(entry.flip());
+                out.write(ByteBuffer.wrap(data));
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        writeContents(idxTmp, (Object) index(entries));
+        long freed = packFile.length() + idxFile.length() - packTmp.length() - idxTmp.length();
+        Journal journal = Journal.of(packFile.getParentFile().getParentFile());
+        journal.written(packTmp);
+        journal.written(idxTmp);
+        journal.rename(packTmp, packFile);
+        journal.rename(idxTmp, idxFile);
+        journal.commit();
+        map();
+        return freed;
+    }
+
+    /** Append the object ID of kind KIND with contents DATA to OUT, as a delta
+     *  against BASE (stored at BASEENTRY) if that is worthwhile. */
+    private Entry append(FileChannel out, byte kind, String id, byte[] data,
+                         byte[] base, Entry baseEntry) throws IOException {
+        long offset = out.position();
+        byte[] stored = data;
+        int depth = 0;
+        if (base != null && baseEntry != null && baseEntry.depth < MAX_DEPTH
+                && data.length <= MAX_DELTA_SOURCE) {
+            byte[] delta = Delta.create(base, data);
+            if (delta.length < data.length / 2) {
+                stored = delta;
+                depth = baseEntry.depth + 1;
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(stored.length + 14);
+        DataOutputStream entry = new DataOutputStream(bytes);
+        entry.writeByte(kind);
+        entry.writeByte(depth > 0 ? DELTA : FULL);
+        entry.writeInt(stored.length);
+        if (depth > 0) {
+            entry.writeLong(baseEntry.offset);
+        }
+        entry.write(stored);
+        out.write(ByteBuffer.wrap(bytes.toByteArray()));
+        return new Entry(ObjectId.toRaw(id), kind, offset, depth);
+    }
+
+    /**
+     * Group the blobs LOOSE into chains of versions of the same file, using
+     * the trees of the commits in COMMITSDIR.  Within a chain blobs are
+     * ordered largest first, so each one is deltified against a similar,
+     * slightly larger version.  Blobs no commit refers to form chains of one.
+     */
+    private static List<List<String>> deltaChains(File commitsDir, List<String> loose) {
+        Map<String, List<String>> byPath = new HashMap<>();
+        Map<String, Long> sizes = new HashMap<>();
+        File blobsDir = join(commitsDir.getParentFile(), "blobs");
+        for (String id : loose) {
+            sizes.put(id, ObjectStore.file(blobsDir, id).length());
+        }
+        List<List<String>> chains = new ArrayList<>();
+        for (String commitID : ObjectStore.list(commitsDir)) {
+            for (Map.Entry<String, String> e : Commit.read(commitID).getTree().entrySet()) {
+                if (sizes.containsKey(e.getValue())) {
+                    List<String> chain = byPath.computeIfAbsent(e.getKey(), k -> {
+                        List<String> c = new ArrayList<>();
+                        chains.add(c);
+                        return c;
+                    });
+                    chain.add(e.getValue());
+                    // Each blob belongs to the first chain that claims it
+                    sizes.remove(e.getValue());
+                }
+            }
+        }
+        for (List<String> chain : chains) {
+            chain.sort((a, b) -> Long.compare(ObjectStore.file(blobsDir, b).length(),
+                    ObjectStore.file(blobsDir, a).length()));
+        }
+        for (String id : sizes.keySet()) {
+            chains.add(List.of(id));
+        }
+        return chains;
+    }
+
+    /** Write the index for ENTRIES, replacing the old one atomically. */
+    private void writeIndex(List<Entry> entries) {
+        File tmp = join(idxFile.getParentFile(), "pack.idx.tmp");
+        writeContents(tmp, (Object) index(entries));
+        try {
+            Files.move(tmp.toPath(), idxFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the contents of the index for ENTRIES. */
+    private static byte[] index(List<Entry> entries) {
+        entries.sort((a, b) -> compare(a.id, b.id, a.kind, b.kind));
+        int[] fanout = new int[256];
+        for (Entry e : entries) {
+            fanout[e.id[0] & 0xff] += 1;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(IDX_HEADER + entries.size() * RECORD);
+        buf.put("PIDX".getBytes()).putInt(VERSION).putInt(entries.size());
+        int running = 0;
+        for (int b = 0; b < 256; b++) {
+            running += fanout[b];
+            buf.putInt(running);
+        }
+        for (Entry e : entries) {
+            buf.put(e.id).put(e.kind).putLong(e.offset);
+        }
+        return buf.array();
+    }
+}
@@ -0,0 +1,196 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static gitlet.Utils.*;
+
+/** Branches: named, movable pointers to commits, and their history.
+ *
+ *  Commits never change once written, so which commits are on which
+ *  branch is recorded here and nowhere else:
+ *
+ *    GITLET_DIR/branches/NAME  the ref of branch NAME: the id of the
+ *                              commit it points to.  Branches fetched from
+ *                              a remote are named REMOTE/BRANCH and live in
+ *                              a subdirectory.
+ *    GITLET_DIR/logs/NAME      the reflog of branch NAME: "GRLG", a version,
+ *                              then one record per update of the ref,
+ *                              [old id][new id][time][reason] (see Codec),
+ *                              oldest first.
+ *
+ *  Creating, moving and deleting a branch is one write of its ref, staged
+ *  through the journal (see Journal) like every other update of the
+ *  repository state, plus an append to its reflog.  The reflog is written
+ *  directly, like the commit indexes, so it may record an update that a
+ *  failed command never made.
+ *
+ *  @author Mingqian Yu
+ */
+class Refs {
+
+    private static final String MAGIC = "GRLG";
+    private static final int VERSION = 1;
+
+    /** An update of a ref, as recorded in its reflog. */
+    static class Update {
+        /** The commit the ref pointed to before, null if it was created. */
+        final String oldID;
+        /** The commit the ref pointed to after, null if it was deleted. */
+        final String newID;
+        /** When the update was made, in seconds since the epoch. */
+        final long time;
+        /** What made the update, e.g. "commit: add wug". */
+        final String reason;
+
+        Update(String oldID, String newID, long time, String reason) {
+            this.oldID = oldID;
+            this.newID = newID;
+            this.time = time;
+            this.reason = reason;
+        }
+    }
+
+    /** The gitlet directory, the refs and the reflogs. */
+    private final File gitletDir;
+    private final File refsDir;
+    private final File logsDir;
+
+    private Refs(File gitletDir) {
+        this.gitletDir = gitletDir;
+        refsDir = join(gitletDir, "branches");
+        logsDir = join(gitletDir, "logs");
+    }
+
+    /** Return the branches of the repository whose gitlet directory is GITLETDIR. */
+    static Refs of(File gitletDir) {
+        return new Refs(gitletDir);
+    }
+
+    /** Return true iff NAME may name a branch: one or more segments
+     *  separated by '/', none of them empty, "." or "..", as git's
+     *  check-ref-format requires.  Other names could reach outside the
+     *  refs directory. */
+    static boolean isValidName(String name) {
+        for (String segment : name.split("/", -1)) {
+            if (segment.isEmpty() || segment.equals(".") || segment.equals("..")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the file of the branch NAME under DIR, the refs or the
+     *  reflogs directory, refusing any name that does not stay inside it. */
+    private static File file(File dir, String name) {
+        if (!isValidName(name)) {
+            throw new IllegalArgumentException("invalid branch name: " + name);
+        }
+        File file = join(dir, name);
+        try {
+            if (!file.getCanonicalPath().startsWith(dir.getCanonicalPath() + File.separator)) {
+                throw new IllegalArgumentException("not under " + dir + ": " + name);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return file;
+    }
+
+    /** Return the commit the branch NAME points to, or null if there is no
+     *  such branch.  Updates staged by this command are taken into account. */
+    String get(String name) {
+        if (!isValidName(name)) {
+            return null;
+        }
+        byte[] id = Journal.of(gitletDir).read(file(refsDir, name));
+        return id == null ? null : new String(id, StandardCharsets.UTF_8);
+    }
+
+    /** Return true iff there is a branch named NAME. */
+    boolean exists(String name) {
+        return get(name) != null;
+    }
+
+    /** Point the branch NAME, which is created if needed, at the commit ID.
+     *  REASON says why, for the reflog. */
+    void set(String name, String id, String reason) {
+        String old = get(name);
+        if (id.equals(old)) {
+            return;
+        }
+        Journal.of(gitletDir).write(file(refsDir, name), id);
+        log(name, old, id, reason);
+    }
+
+    /** Delete the branch NAME and its reflog.  The commits it pointed to
+     *  are left alone. */
+    void delete(String name) {
+        Journal.of(gitletDir).write(file(refsDir, name), null);
+        file(logsDir, name).delete();
+    }
+
+    /** Return the names of all branches, in order. */
+    List<String> names() {
+        List<String> names = new ArrayList<>();
+        list(refsDir, "", names);
+        Collections.sort(names);
+        return names;
+    }
+
+    private static void list(File dir, String prefix, List<String> names) {
+        String[] entries = dir.list();
+        if (entries == null) {
+            return;
+        }
+        for (String entry : entries) {
+            File f = new File(dir, entry);
+            if (f.isDirectory()) {
+                list(f, prefix + entry + "/", names);
+            } else {
+                names.add(prefix + entry);
+            }
+        }
+    }
+
+    /** Return the updates of the branch NAME, oldest first.  Branches made
+     *  before reflogs existed have none. */
+    List<Update> log(String name) {
+        List<Update> updates = new ArrayList<>();
+        if (!isValidName(name)) {
+            return updates;
+        }
+        File file = file(logsDir, name);
+        if (!file.isFile()) {
+            return updates;
+        }
+        Codec.Reader in = new Codec.Reader(readContents(file), MAGIC);
+        while (in.hasMore()) {
+            updates.add(new Update(in.readId(), in.readId(), in.readVarint(), in.readString()));
+        }
+        return updates;
+    }
+
+    /** Append the update of the branch NAME from OLD to ID to its reflog. */
+    private void log(String name, String old, String id, String reason) {
+        File file = file(logsDir, name);
+        file.getParentFile().mkdirs();
+        Codec.Writer out = file.isFile() ? new Codec.Writer() : new Codec.Writer(MAGIC, VERSION);
+        byte[] record = out.writeId(old).writeId(id)
+                .writeVarint(System.currentTimeMillis() / 1000).writeString(reason)
+                .toByteArray();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(record));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static gitlet.Constants.*;
+import static gitlet.Utils.*;
+
+/** Remote repositories, and the copying of commits from one repository to
+ *  another.
+ *
+ *  A remote is a name for the gitlet directory of another repository on
+ *  this machine, recorded in REMOTES_DIR/NAME by add-remote.  fetch copies
+ *  a branch of a remote into the local branch NAME/BRANCH, and push copies
+ *  the current head into a branch of a remote.
+ *
+ *  Either way only the objects the receiving repository lacks are copied.
+ *  They are found by a have/want negotiation over the two commit graphs:
+ *  the sender walks back from the commit asked for (the want) and stops at
+ *  every commit the receiver already has (its haves), since the receiver
+ *  then has everything reachable from it as well.  The trees of the missing
+ *  commits are walked the same way, skipping every tree the receiver has.
+ *  The missing commits, trees and blobs are written as a single transfer
+ *  stream (see Pack.Sender), which the receiver appends to its pack in one
+ *  go rather than as a loose file per object.
+ *
+ *  @author Mingqian Yu
+ */
+class Remote {
+
+    /** Record the gitlet directory PATH, with '/' as separator, as the
+     *  remote NAME. */
+    static void add(String name, String path) {
+        if (name.contains("/") || !Refs.isValidName(name)) {
+            throw error("That is not a valid remote name.");
+        }
+        File file = join(REMOTES_DIR, name);
+        Journal journal = Journal.of(GITLET_DIR);
+        if (journal.read(file) != null) {
+            throw error("A remote with that name already exists.");
+        }
+        journal.write(file, path.replace("/", File.separator));
+    }
+
+    /** Forget the remote NAME. */
+    static void remove(String name) {
+        File file = join(REMOTES_DIR, name);
+        Journal journal = Journal.of(GITLET_DIR);
+        if (journal.read(file) == null) {
+            throw error("A remote with that name does not exist.");
+        }
+        journal.write(file, null);
+    }
+
+    /** Return the gitlet directory of the remote NAME, after finishing any
+     *  command that was interrupted in it. */
+    static File find(String name) {
+        byte[] path = Journal.of(GITLET_DIR).read(join(REMOTES_DIR, name));
+        if (path == null) {
+            throw error("A remote with that name does not exist.");
+        }
+        File dir = new File(new String(path, StandardCharsets.UTF_8));
+        if (!dir.isAbsolute()) {
+            dir = new File(CWD, dir.getPath());
+        }
+        if (!dir.isDirectory()) {
+            throw error(REMOTE_NOT_FOUND);
+        }
+        try {
+            dir = dir.getCanonicalFile();
+        } catch (IOException excp) {
+            throw error(REMOTE_NOT_FOUND);
+        }
+        Journal.recover(dir);
+        return dir;
+    }
+
+    /**
+     * Copy the commit WANT and everything it refers to from the repository
+     * whose gitlet directory is FROM to the one whose gitlet directory is TO,
+     * skipping everything TO already has (see above).  Returns the number
+     * of commits copied.
+     */
+    static int transfer(File from, File to, String want) {
+        CommitGraph sender = CommitGraph.of(from);
+        CommitGraph receiver = CommitGraph.of(to);
+
+        List<String> missing = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        queue.add(want);
+        while (!queue.isEmpty()) {
+            String id = queue.poll();
+            if (!seen.add(id) || receiver.contains(id)) {
+                continue;
+            }
+            missing.add(id);
+            String first = sender.firstParent(id);
+            String second = sender.secondParent(id);
+            if (first != null) {
+                queue.add(first);
+            }
+            if (second != null) {
+                queue.add(second);
+            }
+        }
+        if (missing.isEmpty()) {
+            return 0;
+        }
+        // Parents before children, as the receiver's commit graph requires
+        missing.sort(Comparator.comparingInt(sender::generation));
+
+        File incoming = join(to, "pack", "incoming.tmp");
+        incoming.getParentFile().mkdirs();
+        Map<String, Commit> commits = new HashMap<>();
+        try {
+            try (Pack.Sender out = new Pack.Sender(Files.newOutputStream(incoming.toPath()))) {
+                Set<String> sent = new HashSet<>();
+                for (String id : missing) {
+                    byte[] data = ObjectStore.read(join(from, "commits"), id);
+                    Commit commit = Commit.decode(data);
+                    commits.put(id, commit);
+                    out.send(Pack.COMMIT, id, data);
+                    sendTree(from, to, commit.getTreeID(), out, sent);
+                }
+            }
+            try (InputStream in = Files.newInputStream(incoming.toPath())) {
+                Pack.of(to).receive(in);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            incoming.delete();
+        }
+
+        CommitIndex index = CommitIndex.of(to);
+        for (String id : missing) {
+            Commit commit = commits.get(id);
+            receiver.append(id, sender.firstParent(id), sender.secondParent(id), commit.getTime());
+            index.record(id, commit);
+        }
+        return missing.size();
+    }
+
+    /** Send the tree ROOT of FROM, and every tree and blob below it, to OUT,
+     *  skipping what TO has and what was SENT already (keyed by kind and id). */
+    private static void sendTree(File from, File to, String root,
+                                 Pack.Sender out, Set<String> sent) throws IOException {
+        Deque<String> trees = new ArrayDeque<>();
+        trees.push(root);
+        while (!trees.isEmpty()) {
+            String id = trees.pop();
+            if (sent.contains(Pack.TREE + id) || ObjectStore.contains(join(to, "trees"), id)) {
+                continue;
+            }
+            byte[] data = ObjectStore.read(join(from, "trees"), id);
+            out.send(Pack.TREE, id, data);
+            sent.add(Pack.TREE + id);
+            List<String> blobs = new ArrayList<>();
+            Tree.children(data, trees, blobs);
+            for (String blob : blobs) {
+                sendBlob(from, to, blob, out, sent);
+            }
+        }
+    }
+
+    /** Send the blob ID of FROM to OUT, unless TO has it or it was SENT already. */
+    private static void sendBlob(File from, File to, String id,
+                                 Pack.Sender out, Set<String> sent) throws IOException {
+        if (sent.contains(Pack.BLOB + id) || ObjectStore.contains(join(to, "blobs"), id)) {
+            return;
+        }
+        try (InputStream in = Blob.open(join(from, "blobs"), id)) {
+            out.send(Pack.BLOB, id, in.readAllBytes());
+        }
+        sent.add(Pack.BLOB + id);
+    }
+}
@@ -1,11 +1,20 @@
 package gitlet;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static gitlet.Constants.*;
 import static gitlet.Utils.*;
@@ -21,13 +30,31 @@ public class Repository implements Serializable, Dumpable {
      * variable is used. We've provided two examples for you.
      */
 
+    /** Type tag and format version of the encoded repository state. */
+    private static final String MAGIC = "GREP";
+    private static final int VERSION = 3;
+
     /* Fields */
 
     private Staging staging; // Staging area
 
     private String currentBranch = "master"; // Name of the current branch
 
-    private Commit head; // Pointer to the HEAD commit of the current branch
+    private Commit head; // HEAD commit, resolved from the current branch's ref and never saved
+
+    private Index index = new Index(); // Stat cache of the working directory
+
+    private byte[] saved; // Encoded state as last loaded or saved, null if never saved
+
+    /** Whether load() keeps the repository between commands, as a server does (see Daemon). */
+    private static boolean keepResident;
+    /** The repository kept between commands, or null. */
+    private static Repository resident;
+    /** File key and modification time of the saved state the resident repository matches. */
+    private static Object residentStamp;
+
+    /** Maximum number of threads used to write files during a checkout. */
+    private static final int CHECKOUT_THREADS = Runtime.getRuntime().availableProcessors();
 
     private static class Staging implements Serializable {
         Map<String, String> stagedForAddition = new HashMap<>();
@@ -37,14 +64,22 @@ public class Repository implements Serializable, Dumpable {
     /* Constructor */
 
     public Repository() {
-        // If the repository doesn't exist under .gitlet/ create an empty repository
-        // Otherwise load the repository
+        this(true);
+    }
+
+    /**
+     * If LOADEXISTING and the repository exists under .gitlet/, load it;
+     * otherwise create an empty repository.
+     */
+    private Repository(boolean loadExisting) {
         File file = Utils.join(GITLET_DIR, "Repository");
-        if (file.exists()) {
+        if (loadExisting && file.exists()) {
             Repository repo = load();
             this.staging = repo.staging;
             this.currentBranch = repo.currentBranch;
             this.head = repo.head;
+            this.index = repo.index;
+            this.saved = repo.saved;
         }
     }
 
@@ -76,12 +111,13 @@ public class Repository implements Serializable, Dumpable {
         // Create the initial commit and store it in the commits folder
         Commit commit = new Commit();
         commit.save();
+        CommitGraph.of(GITLET_DIR).append(commit.getCommitUID(), null, null, commit.getTime());
+        CommitIndex.of(GITLET_DIR).record(commit.getCommitUID(), commit);
 
         // Create the master branch and assign the HEAD pointer
         this.head = commit;
-        File branch = Utils.join(BRANCHES_DIR, currentBranch);
-        writeContents(branch, commit.getCommitUID());
         this.currentBranch = "master";
+        Refs.of(GITLET_DIR).set(currentBranch, commit.getCommitUID(), "init");
 
         // Save this repository object under .gitlet/
         save(this);
@@ -108,35 +144,35 @@ public class Repository implements Serializable, Dumpable {
      * @param filename Name of the file to be added to the staging area
      */
     public void add(String filename) {
-
+        filename = trackedPath(filename);
         File file = join(CWD, filename);
-        // The initial version of gitlet only allows adding plain file,
-        // maybe in later version it will support dir too
+        // Only plain files can be added, files in subdirectories
+        // are named by their path relative to the working directory, e.g. "dir/wug.txt"
         if (!file.isFile()) {
             throw error(FILE_NOT_EXIST_ERR);
         }
-        String contents = Utils.readContentsAsString(file);
-
-        // store the blob (use sha1 hash of the content to avoid duplicates)
-        File blob = join(BLOBS_DIR, Utils.sha1(contents));
-        Utils.writeContents(blob, contents);
-
-        // Compare the file to the one in the current head commit
-        Commit commit = this.head;
-        String headBlobName = commit.getBlobName(filename);
-        if (headBlobName != null) {
-            String headBlobContent = Utils.readContentsAsString(join(BLOBS_DIR, headBlobName));
-            // Compare blob with headBlob,
-            // if they are equal, then do not add the file to the staging area
-            // and remove it from untracked files if it's there.
-            if (contents.equals(headBlobContent)) {
-                staging.stagedForRemoval.remove(filename);
-                return;
-            }
+        staging.stagedForRemoval.remove(filename);
+
+        // Hash the file unless the stat cache shows it is unchanged since it was last hashed,
+        // and store the blob (use sha1 hash of the content to avoid duplicates).
+        // The file is streamed, it is hashed while it is copied into the store.
+        String blob = index.cachedBlob(filename, file);
+        if (blob == null || !ObjectStore.contains(BLOBS_DIR, blob)) {
+            blob = Blob.store(file);
+            index.record(filename, file, blob);
+        }
+
+        // Compare the blob to the one in the current head commit,
+        // blobs are content addressed so equal names mean equal contents.
+        // If they are equal, then do not add the file to the staging area
+        // and remove it from the staging area if it's there.
+        if (blob.equals(head.getBlobName(filename))) {
+            staging.stagedForAddition.remove(filename);
+            return;
         }
 
         // Otherwise, add the file to the staging area and save
-        staging.stagedForAddition.put(filename, Utils.sha1(contents));
+        staging.stagedForAddition.put(filename, blob);
     }
 
     /**
@@ -173,49 +209,40 @@ public class Repository implements Serializable, Dumpable {
         // Read from the file system the HEAD commit object and the staging area
         Commit headCommit = this.head;
 
-        // Clone the HEAD commit, modify its message and timestamp according to user input
-        // Most importantly, set the parent of this new commit to the original HEAD commit
-        Commit commit = new Commit(
-                message, headCommit.getTree(), currentBranch, headCommit.getCommitUID());
-        if (!branchToMerge.isEmpty()) {
-            String branchHead = Utils.readContentsAsString(Utils.join(BRANCHES_DIR, branchToMerge));
-            commit.addParent(branchToMerge, branchHead);
-        }
-
         // The staging area must not be empty
         if (staging.stagedForAddition.isEmpty() && staging.stagedForRemoval.isEmpty()) {
             throw error(STAGING_AREA_EMPTY_ERR);
         }
 
-        // Add the files staged for addition from parent
-        for (String filename : staging.stagedForAddition.keySet()) {
-            Map<String, String> tree = commit.getTree();
-            if (tree.containsKey(filename)) {
-                String blobName = staging.stagedForAddition.get(filename);
-                tree.put(filename, blobName);
-            } else {
-                File file = Utils.join(CWD, filename);
-                tree.put(filename, Utils.sha1(Utils.readContentsAsString(file)));
-            }
-        }
-
-        // Remove the files staged for removal from parent
+        // The files staged for addition (their blobs were already hashed and stored by add)
+        // and removal are the changes to the parent's tree. Only the trees on the changed
+        // paths are rewritten, every other directory is shared with the parent.
+        Map<String, String> changes = new HashMap<>(staging.stagedForAddition);
         for (String filename : staging.stagedForRemoval) {
-            Map<String, String> tree = commit.getTree();
-            tree.remove(filename);
+            changes.put(filename, null);
         }
+        String treeID = Tree.update(headCommit.getTreeID(), changes);
 
-        // Update the HEAD + branch pointer to the new commit
-        this.head = commit;
-        for (String branchName : commit.getBranches()) {
-            File branch = Utils.join(BRANCHES_DIR, branchName);
-            readContentsAsString(branch);
-            writeContents(branch, commit.getCommitUID());
+        // The parent of this new commit is the original HEAD commit,
+        // and for a merge also the head of the branch merged in
+        Refs refs = Refs.of(GITLET_DIR);
+        List<String> parents = new ArrayList<>(List.of(headCommit.getCommitUID()));
+        String branchHead = null;
+        if (!branchToMerge.isEmpty()) {
+            branchHead = refs.get(branchToMerge);
+            parents.add(branchHead);
         }
+        Commit commit = new Commit(message, treeID, parents);
 
-        // Store any new or modified commit object into the file system
-        // and clean up the staging area
+        // Store the new commit object, then move HEAD and the current branch (only) to it
         commit.save();
+        this.head = commit;
+        refs.set(currentBranch, commit.getCommitUID(), "commit: " + message);
+
+        // Clean up the staging area
+        CommitGraph.of(GITLET_DIR).append(
+                commit.getCommitUID(), headCommit.getCommitUID(), branchHead, commit.getTime());
+        CommitIndex.of(GITLET_DIR).record(commit.getCommitUID(), commit);
         staging.stagedForAddition.clear();
         staging.stagedForRemoval.clear();
         save(this);
@@ -226,12 +253,13 @@ public class Repository implements Serializable, Dumpable {
      * @param filename
      */
     public void rm(String filename) {
+        filename = trackedPath(filename);
         Map<String, String> stagedForAddition = staging.stagedForAddition;
         Set<String> stagedForRemoval = staging.stagedForRemoval;
-        Map<String, String> tree = head.getTree();
+        boolean tracked = head.getBlobName(filename) != null;
 
         // If the file is neither staged nor tracked by the head commit, print the error message
-        if (!stagedForAddition.containsKey(filename) && !tree.containsKey(filename)) {
+        if (!stagedForAddition.containsKey(filename) && !tracked) {
             throw error(RM_ERR);
         }
 
@@ -239,12 +267,14 @@ public class Repository implements Serializable, Dumpable {
         stagedForAddition.remove(filename);
 
         // If the file is tracked in the current commit, stage it for removal.
-        if (tree.containsKey(filename)) {
+        if (tracked) {
             stagedForRemoval.add(filename);
             // Remove the file from the working directory if the user has not already done so
             // (do not remove it unless it is tracked in the current commit).
             File file = Utils.join(CWD, filename);
             file.delete();
+            pruneEmptyDirectories(file.getParentFile());
+            index.remove(filename);
         }
     }
 
@@ -285,9 +315,8 @@ public class Repository implements Serializable, Dumpable {
             }
 
             // Retrieve all files from the checkout branch and store them under CWD
-            try {
-                commitID = Utils.readContentsAsString(Utils.join(BRANCHES_DIR, branch));
-            } catch (IllegalArgumentException e) {
+            commitID = Refs.of(GITLET_DIR).get(branch);
+            if (commitID == null) {
                 throw error(BRANCH_NOT_EXIST);
             }
 
@@ -304,6 +333,7 @@ public class Repository implements Serializable, Dumpable {
         }
 
         // Checkout a single file
+        filename = trackedPath(filename);
         String blob = null;
 
         if (commitID == null) {
@@ -316,52 +346,54 @@ public class Repository implements Serializable, Dumpable {
             throw Utils.error(FILE_NOT_IN_COMMIT);
         }
 
-        File bf = Utils.join(BLOBS_DIR, blob);
-        String c = Utils.readContentsAsString(bf);
         File f = Utils.join(CWD, filename);
-        writeContents(f, c);
+        f.getParentFile().mkdirs();
+        Blob.checkout(blob, f);
+        index.record(filename, f, blob);
 
     }
 
+    /**
+     * Starting at the current head commit, display information about each commit
+     * backwards along the first-parent chain until the initial commit.
+     * The chain is followed through the commit graph, commits are only read to
+     * display their message and date.
+     */
     public void log() {
-        Commit ptr = head;
-        while (ptr != null) {
-            String filename = ptr.getCommitUID();
+        CommitGraph graph = CommitGraph.of(GITLET_DIR);
+        String commitID = head.getCommitUID();
+        while (commitID != null) {
+            Commit ptr = Commit.read(commitID);
 
             System.out.println("===");
-            System.out.printf("commit %s%n", filename);
+            System.out.printf("commit %s%n", commitID);
 
             // Handle merge commits
-            if (new HashSet<String>(ptr.getParents()).size() > 1) {
-                StringBuilder commits = new StringBuilder();
-                for (String parent : ptr.getParents()) {
-                    commits.append(parent, 0, 7).append(" ");
-                }
-                System.out.println("Merge: " + commits.toString());
+            String mergedIn = graph.secondParent(commitID);
+            if (mergedIn != null) {
+                System.out.printf("Merge: %s %s %n",
+                        graph.firstParent(commitID).substring(0, 7), mergedIn.substring(0, 7));
             }
 
             System.out.printf("Date: %s%n", ptr.getTimeStamp());
             System.out.println(ptr.getMessage());
             System.out.println();
 
-            if (ptr.getParent(currentBranch) == null) {
-                break;
-            }
-            ptr = Commit.read(ptr.getParent(currentBranch));
+            commitID = graph.firstParent(commitID);
         }
     }
 
     /**
      * Description: Like log, except displays information about all commits ever made.
      * The order of the commits does not matter.
+     * Commits are listed from the global log file (see CommitIndex), oldest first.
      */
     public void globalLog() {
-        for (String commitID : Objects.requireNonNull(plainFilenamesIn(COMMITS_DIR))) {
-            Commit commit = Commit.read(commitID);
+        for (CommitIndex.Entry commit : CommitIndex.of(GITLET_DIR).all()) {
             System.out.println("===");
-            System.out.printf("commit %s%n", commitID);
-            System.out.printf("Date: %s%n", commit.getTimeStamp());
-            System.out.println(commit.getMessage());
+            System.out.printf("commit %s%n", commit.id);
+            System.out.printf("Date: %s%n", commit.timestamp);
+            System.out.println(commit.message);
             System.out.println();
         }
     }
@@ -372,22 +404,18 @@ public class Repository implements Serializable, Dumpable {
      * If there are multiple such commits, it prints the ids out on separate lines.
      * The commit message is a single operand; to indicate a multiword message,
      * put the operand in quotation marks, as for the commit command below.
+     * The ids are looked up in the message index (see CommitIndex).
      *
      * @param given given message
      */
     public void find(String given) {
-        boolean res = false;
-        for (String commitID : Objects.requireNonNull(plainFilenamesIn(COMMITS_DIR))) {
-            Commit commit = Commit.read(commitID);
-            String msg = commit.getMessage();
-            if (given.equals(msg)) {
-                res = true;
-                System.out.println(commitID);
-            }
-        }
-        if (!res) {
+        List<String> commitIDs = CommitIndex.of(GITLET_DIR).find(given);
+        if (commitIDs.isEmpty()) {
             throw Utils.error("Found no commit with that message.");
         }
+        for (String commitID : commitIDs) {
+            System.out.println(commitID);
+        }
     }
 
     /**
@@ -398,8 +426,7 @@ public class Repository implements Serializable, Dumpable {
      */
     public void status() {
         System.out.println("=== Branches ===");
-        List<String> branches = Utils.plainFilenamesIn(BRANCHES_DIR);
-        for (String branch : branches) {
+        for (String branch : Refs.of(GITLET_DIR).names()) {
             if (branch.equals(currentBranch)) {
                 System.out.println("*" + branch);
             } else {
@@ -425,6 +452,9 @@ public class Repository implements Serializable, Dumpable {
         System.out.println();
 
         System.out.println("=== Modifications Not Staged For Commit ===");
+        for (String modifiedFile : this.getModifiedNotStaged()) {
+            System.out.println(modifiedFile);
+        }
         System.out.println();
 
         System.out.println("=== Untracked Files ===");
@@ -441,28 +471,28 @@ public class Repository implements Serializable, Dumpable {
      * This command does NOT immediately switch to the newly created branch.
      * Before you ever call branch,
      * your code should be running with a default branch called “master”.
+     * Creating a branch writes its ref and nothing else (see Refs).
      *
      * @param branchName branch name from user input
      */
     public void branch(String branchName) {
-        for (String n : Objects.requireNonNull(plainFilenamesIn(BRANCHES_DIR))) {
-            if (n.equals(branchName)) {
-                throw error("A branch with that name already exists.");
-            }
+        if (!Refs.isValidName(branchName)) {
+            throw error(BRANCH_NAME_INVALID);
+        }
+        Refs refs = Refs.of(GITLET_DIR);
+        if (refs.exists(branchName)) {
+            throw error("A branch with that name already exists.");
         }
-        head = head.branch(branchName, currentBranch);
         // The new branch points to the current branch's HEAD commit
-        File f = new File(BRANCHES_DIR, branchName);
-        File branch = Utils.join(BRANCHES_DIR, currentBranch);
-        String commitID = readContentsAsString(branch);
-        writeContents(f, commitID);
+        refs.set(branchName, head.getCommitUID(), "branch: Created from " + currentBranch);
     }
 
     /**
      * Deletes the branch with the given name.
      * This only means to delete the pointer associated with the branch;
      * it does not mean to delete all commits that were created under the branch,
-     * or anything like that.
+     * or anything like that.  Commits are never rewritten, so this is a
+     * single deletion of the branch's ref.
      *
      * @param given branch name from user input
      */
@@ -470,34 +500,11 @@ public class Repository implements Serializable, Dumpable {
         if (currentBranch.equals(given)) {
             throw error("Cannot remove the current branch.");
         }
-        String branchName = "";
-        for (String n : Objects.requireNonNull(plainFilenamesIn(BRANCHES_DIR))) {
-            if (n.equals(given)) {
-                branchName = given;
-                break;
-            }
-        }
-        if (branchName.isEmpty()) {
+        Refs refs = Refs.of(GITLET_DIR);
+        if (!refs.exists(given)) {
             throw error("A branch with that name does not exist.");
         }
-
-        // Trace back from branch HEAD and update all parents commit objects
-        File branch = Utils.join(BRANCHES_DIR, branchName);
-        String commitID = Utils.readContentsAsString(branch);
-        Commit commit = Commit.read(commitID);
-
-        while (commit.hasParent()) {
-            for (String b : commit.getBranches()) {
-                if (branchName.equals(b) && commit.getParent(b) != null) {
-                    Commit prev = Commit.read(commit.getParent(b));
-                    commit.removeBranch(b);
-                    commit = prev;
-                }
-            }
-        }
-
-        // Delete branch
-        branch.delete();
+        refs.delete(given);
     }
 
     /**
@@ -518,17 +525,13 @@ public class Repository implements Serializable, Dumpable {
             throw error(UNTRACKED_ERR);
         }
         Commit commit = Commit.read(given);
-        Set<String> branches = commit.getBranches();
         checkoutCommit(commit);
         this.staging = new Staging();
         this.head = commit;
 
-        // Set the branch HEAD as well for only the current branch in the commits
-        for (String branch : branches) {
-            if (branch.equals(currentBranch)) {
-                Utils.writeContents(Utils.join(BRANCHES_DIR, branch), given);
-            }
-        }
+        // Move the current branch to the commit, wherever it is
+        Refs.of(GITLET_DIR).set(currentBranch, commit.getCommitUID(),
+                "reset: moving to " + commit.getCommitUID());
     }
 
     /**
@@ -550,38 +553,37 @@ public class Repository implements Serializable, Dumpable {
             throw error("You have uncommitted changes.");
         }
 
-        File branch = Utils.join(BRANCHES_DIR, target);
-        if (!branch.isFile()) {
+        String targetHead = Refs.of(GITLET_DIR).get(target);
+        if (targetHead == null) {
             throw Utils.error("A branch with that name does not exist.");
         }
 
-        // Find the split point: p1 -> current branch, p2 -> target branch
-        Commit p1 = head;
-        Commit p2 = Commit.read(Utils.readContentsAsString(branch));
-        Commit split = findSplittingPoint(currentBranch, target, p1, p2);
-
-        Commit other = Commit.read(Utils.readContentsAsString(branch));
+        // Find the split point, the latest common ancestor of the two branch heads
+        Commit other = Commit.read(targetHead);
+        String splitID = CommitGraph.of(GITLET_DIR)
+                .mergeBase(head.getCommitUID(), other.getCommitUID());
+        Commit split = Commit.read(splitID);
 
         // Special merge cases
         if (other.getCommitUID().equals(split.getCommitUID())) {
             throw error("Given branch is an ancestor of the current branch.");
         }
         if (head.getCommitUID().equals(split.getCommitUID())) {
+            // Move the current branch up to the given branch head
             checkoutCommit(other);
+            head = other;
+            staging = new Staging();
+            Refs.of(GITLET_DIR).set(currentBranch, other.getCommitUID(),
+                    "merge " + target + ": Fast-forward");
             throw error("Current branch fast-forwarded.");
         }
 
-        // List all file names under these 3 commits: head, other, split
-        Map<String, String> headTree = head.getTree();
-        Map<String, String> otherTree = other.getTree();
-        Map<String, String> splitTree = split.getTree();
-
-        Set<String> filenames = new HashSet<>(headTree.keySet());
-        filenames.addAll(split.getTree().keySet());
-        filenames.addAll(other.getTree().keySet());
+        // Only the files that changed since the split point on either side need merging,
+        // directories that are the same tree as at the split point are never read
+        Set<String> filenames = Tree.changedPaths(split.getTreeID(), head.getTreeID());
+        filenames.addAll(Tree.changedPaths(split.getTreeID(), other.getTreeID()));
 
-        boolean encounteredConflict =
-                mergeHelper(filenames, other, split, headTree, otherTree, splitTree);
+        boolean encounteredConflict = mergeHelper(filenames, other, split);
 
         if (encounteredConflict) {
             message("Encountered a merge conflict.");
@@ -590,12 +592,13 @@ public class Repository implements Serializable, Dumpable {
         commit("Merged " + target + " into " + currentBranch + ".", target);
     }
 
-    private boolean mergeHelper(Set<String> filenames, Commit other, Commit split,
-                                Map<String, String> headTree,
-                                Map<String, String> otherTree,
-                                Map<String, String> splitTree) {
+    private boolean mergeHelper(Set<String> filenames, Commit other, Commit split) {
         boolean encounteredConflict = false;
         for (String f : filenames) {
+            String headBlob = head.getBlobName(f);
+            String otherBlob = other.getBlobName(f);
+            String splitBlob = split.getBlobName(f);
+
             // Description of merge() control flow:
             // For file x, commit HEAD and other, define 5 functions of return type boolean:
 
@@ -618,158 +621,327 @@ public class Repository implements Serializable, Dumpable {
             // invalid:                 FFFFF, FT---, --FT-, etc.                   (20)
 
             // modified HEAD and conflict
-            if (headTree.containsKey(f)) {
-                if (splitTree.containsKey(f)) {
-                    if (isModified(f, head, split)) {
-                        if (otherTree.containsKey(f) && isModified(f, other, split)) {
-                            encounteredConflict = resolveMergeConflict(f, head, other, false);
+            if (headBlob != null) {
+                if (splitBlob != null) {
+                    if (!headBlob.equals(splitBlob)) {
+                        if (otherBlob != null && !otherBlob.equals(splitBlob)) {
+                            encounteredConflict |= resolveMergeConflict(f, head, other, split);
                         }
-                        if (!otherTree.containsKey(f)) {
-                            encounteredConflict = resolveMergeConflict(f, head, other, false);
+                        if (otherBlob == null) {
+                            encounteredConflict |= resolveMergeConflict(f, head, other, split);
                         }
                         continue;
                     }
                 } else {
-                    if (otherTree.containsKey(f)) {
-                        encounteredConflict = resolveMergeConflict(f, head, other, false);
+                    if (otherBlob != null) {
+                        encounteredConflict |= resolveMergeConflict(f, head, other, split);
                     }
                     continue;
                 }
             }
             // modified other
-            if (otherTree.containsKey(f)) {
+            if (otherBlob != null) {
 
-                if (!splitTree.containsKey(f) || isModified(f, other, split)) {
-                    if (splitTree.containsKey(f) && !headTree.containsKey(f)) {
-                        encounteredConflict = resolveMergeConflict(f, head, other, false);
+                if (splitBlob == null || !otherBlob.equals(splitBlob)) {
+                    if (splitBlob != null && headBlob == null) {
+                        encounteredConflict |= resolveMergeConflict(f, head, other, split);
                         continue;
                     }
-                    staging.stagedForAddition.put(f, other.getBlobName(f));
+                    staging.stagedForAddition.put(f, otherBlob);
                     other.writeFile(f);
                     continue;
                 }
             }
             // unmodified
-            if (headTree.containsKey(f) && !otherTree.containsKey(f)) {
+            if (headBlob != null && otherBlob == null) {
                 staging.stagedForRemoval.add(f);
-                Utils.join(CWD, f).delete();
+                File file = Utils.join(CWD, f);
+                file.delete();
+                pruneEmptyDirectories(file.getParentFile());
             }
         }
         return encounteredConflict;
     }
 
+    /**
+     * Merge the versions of FILENAME in CURRENT and TARGET, both changed since SPLIT.
+     * When both sides have the file, it is merged line by line against the split
+     * point version (see Diff.merge3), so only overlapping changes conflict;
+     * otherwise the whole file is a conflict, a missing side counting as empty.
+     * The result is staged as a new blob of its own and written to the working
+     * directory. Returns true iff it has conflict markers.
+     */
     private boolean resolveMergeConflict(
-            String filename, Commit current, Commit target, boolean encountered) {
-        String currentContent = "", targetContent = "";
-
-        // Read only if both current and target commit contains the file
-        if (current.getTree().containsKey(filename)) {
-            currentContent = Utils.readContentsAsString(
-                    Utils.join(BLOBS_DIR, current.getBlobName(filename)));
-        }
-        if (target.getTree().containsKey(filename)) {
-            targetContent = Utils.readContentsAsString(
-                    Utils.join(BLOBS_DIR, target.getBlobName(filename)));
-        }
-
-        if (!currentContent.equals(targetContent)) {
-            // Otherwise, staging the file
-            String blobName = currentContent.isEmpty()
-                    ? target.getBlobName(filename) : current.getBlobName(filename);
-            String mergeConflict =
-                    "<<<<<<< HEAD\n"
-                    + currentContent
-                    + "=======\n"
-                    + targetContent
-                    + ">>>>>>>\n";
-            Utils.writeContents(Utils.join(BLOBS_DIR, blobName), mergeConflict);
+            String filename, Commit current, Commit target, Commit split) {
+        String currentBlob = current.getBlobName(filename);
+        String targetBlob = target.getBlobName(filename);
+
+        // Blobs are content addressed, so equal names mean there is nothing to resolve
+        if (Objects.equals(currentBlob, targetBlob)) {
+            return false;
+        }
+        // Read only the sides that contain the file
+        byte[] currentContent = currentBlob == null ? new byte[0] : Blob.read(currentBlob);
+        byte[] targetContent = targetBlob == null ? new byte[0] : Blob.read(targetBlob);
+
+        byte[] contents;
+        boolean conflict;
+        if (currentBlob != null && targetBlob != null) {
+            String splitBlob = split.getBlobName(filename);
+            byte[] base = splitBlob == null ? new byte[0] : Blob.read(splitBlob);
+            Diff.Merged merged = Diff.merge3(base, currentContent, targetContent);
+            contents = merged.contents;
+            conflict = merged.conflict;
+        } else {
+            ByteArrayOutputStream mergeConflict = new ByteArrayOutputStream();
+            mergeConflict.writeBytes("<<<<<<< HEAD\n".getBytes(StandardCharsets.UTF_8));
+            mergeConflict.writeBytes(currentContent);
+            mergeConflict.writeBytes("=======\n".getBytes(StandardCharsets.UTF_8));
+            mergeConflict.writeBytes(targetContent);
+            mergeConflict.writeBytes(">>>>>>>\n".getBytes(StandardCharsets.UTF_8));
+            contents = mergeConflict.toByteArray();
+            conflict = true;
+        }
+
+        String blobName = Blob.store(contents);
+        if (!blobName.equals(currentBlob)) {
             staging.stagedForAddition.put(filename, blobName);
-            if (currentContent.isEmpty()) {
-                target.writeFile(filename);
-            } else {
-                current.writeFile(filename);
+            File f = Utils.join(CWD, filename);
+            f.getParentFile().mkdirs();
+            Utils.writeContents(f, (Object) contents);
+            index.record(filename, f, blobName);
+        }
+        return conflict;
+    }
+
+    /**
+     * Moves every loose commit, tree and blob into the repository's packfile
+     * (see Pack), storing successive versions of the same file as deltas,
+     * and deletes the loose copies.
+     */
+    public void repack() {
+        int[] packed = Pack.of(GITLET_DIR).repack(COMMITS_DIR, TREES_DIR, BLOBS_DIR);
+        message("Packed %d objects, %d as deltas.", packed[0], packed[1]);
+    }
+
+    /**
+     * Deletes every commit, tree and blob that cannot be reached from a
+     * branch, the reflog of a branch, the current head or the staging area
+     * (see GarbageCollector),
+     * and reports how much space that freed.
+     */
+    public void gc() {
+        List<String> roots = new ArrayList<>();
+        Refs refs = Refs.of(GITLET_DIR);
+        for (String branch : refs.names()) {
+            roots.add(refs.get(branch));
+            // A commit a branch used to point to stays, for as long as the reflog names it
+            for (Refs.Update update : refs.log(branch)) {
+                if (update.oldID != null) {
+                    roots.add(update.oldID);
+                }
+                if (update.newID != null) {
+                    roots.add(update.newID);
+                }
             }
-            encountered = true;
         }
-        return encountered;
+        roots.add(head.getCommitUID());
+        long[] freed = new GarbageCollector().collect(roots, staging.stagedForAddition.values());
+        message("Removed %d unreachable objects, reclaimed %d bytes.", freed[0], freed[1]);
     }
 
     /**
-     * Given commit p1 on branch b1, and commit p2 on branch b2.
-     * Finding the splitting point of b1 and b2 (Their latest common ancestor) if it exists.
-     * @param p1 HEAD commit of b1
-     * @param p2 HEAD commit of b2
-     * @return
+     * Saves the given login information under the given remote name,
+     * the path of the .gitlet directory of another repository, with '/'
+     * as separator whatever the platform.
      */
-    private Commit findSplittingPoint(String b1, String b2, Commit p1, Commit p2) {
-        Commit split = null;
-        Set<String> seen = new HashSet<>();
-
-        assert p1 != null && p2 != null;
-        // Two pointers algorithm, note that if we store seen commits instead of UID,
-        // hashcode and equals method in Commit class are required to be overwritten
-        while (p1.getParent(b1) != null && p2.getParent(b2) != null) {
-            String cid1 = p1.getCommitUID();
-            String cid2 = p2.getCommitUID();
-            if (cid1.equals(cid2) || seen.contains(cid1)) {
-                split = p1;
-                break;
-            } else if (seen.contains(cid2)) {
-                split = p2;
-                break;
-            } else {
-                seen.addAll(Arrays.asList(cid1, cid2));
+    public void addRemote(String name, String path) {
+        Remote.add(name, path);
+    }
+
+    /** Removes information associated with the given remote name. */
+    public void rmRemote(String name) {
+        Remote.remove(name);
+    }
+
+    /**
+     * Brings down commits from the remote Gitlet repository into the local
+     * Gitlet repository, copying only the commits, trees and blobs this
+     * repository lacks (see Remote), and points the branch
+     * [remote name]/[remote branch name] at the head of the remote branch.
+     */
+    public void fetch(String remote, String branchName) {
+        File dir = Remote.find(remote);
+        String remoteHead = Refs.of(dir).get(branchName);
+        if (remoteHead == null) {
+            throw error("That remote does not have that branch.");
+        }
+        if (!Refs.isValidName(remote + "/" + branchName)) {
+            throw error(BRANCH_NAME_INVALID);
+        }
+        Remote.transfer(dir, GITLET_DIR, remoteHead);
+        Refs.of(GITLET_DIR).set(remote + "/" + branchName, remoteHead, "fetch");
+    }
+
+    /**
+     * Attempts to append the current branch's commits to the end of the given
+     * branch at the given remote, copying only what the remote lacks.
+     * This only works if the remote branch's head is in the history of the
+     * current local head; a branch the remote does not have is created.
+     *
+     * If the branch is the remote's current branch, the remote is then reset
+     * to the pushed head, as the reset command would there: its working
+     * directory is brought up to date. The push is refused while the remote
+     * has uncommitted changes, so that nothing there is lost.
+     */
+    public void push(String remote, String branchName) {
+        if (!Refs.isValidName(branchName)) {
+            throw error(BRANCH_NAME_INVALID);
+        }
+        File dir = Remote.find(remote);
+        Refs remoteRefs = Refs.of(dir);
+        String remoteHead = remoteRefs.get(branchName);
+        String headID = head.getCommitUID();
+        CommitGraph graph = CommitGraph.of(GITLET_DIR);
+        if (remoteHead != null && !(graph.contains(remoteHead)
+                && remoteHead.equals(graph.mergeBase(remoteHead, headID)))) {
+            throw error("Please pull down remote changes before pushing.");
+        }
+
+        // The remote's old head is an ancestor of ours, so both trees can be read here
+        Repository other = decode(Journal.of(dir).read(Utils.join(dir, "Repository")), dir);
+        boolean checkedOut = other.currentBranch.equals(branchName);
+        Map<String, String> from = checkedOut ? Commit.read(remoteHead).getTree() : null;
+        Map<String, String> to = head.getTree();
+        if (checkedOut) {
+            other.checkClean(dir.getParentFile(), from, to);
+        }
+
+        Remote.transfer(GITLET_DIR, dir, headID);
+        remoteRefs.set(branchName, headID, "push");
+        if (checkedOut) {
+            other.resetWorkingTree(dir.getParentFile(), from, to);
+            Journal.of(dir).write(Utils.join(dir, "Repository"), other.encode());
+        }
+        Journal.of(dir).commit();
+    }
+
+    /**
+     * Throw unless the working directory WORKDIR of this repository, whose
+     * head has the tree FROM (a map from path to blob id), can be reset to
+     * the tree TO without losing work: nothing may be staged, every tracked
+     * file must still hold its blob of FROM, and no file that is not tracked
+     * may be in the way of TO.
+     */
+    private void checkClean(File workDir, Map<String, String> from, Map<String, String> to) {
+        if (!staging.stagedForAddition.isEmpty() || !staging.stagedForRemoval.isEmpty()) {
+            throw error(REMOTE_UNCOMMITTED_ERR);
+        }
+        for (Map.Entry<String, String> entry : from.entrySet()) {
+            String fn = entry.getKey();
+            if (!entry.getValue().equals(index.blobOf(fn, Utils.join(workDir, fn)))) {
+                throw error(REMOTE_UNCOMMITTED_ERR);
             }
-            p1 = Commit.read(p1.getParent(b1));
-            p2 = Commit.read(p2.getParent(b2));
-        }
-        while (split == null && p1.getParent(b1) != null) {
-            String cid1 = p1.getCommitUID();
-            String cid2 = p2.getCommitUID();
-            if (cid1.equals(cid2) || seen.contains(cid1)) {
-                split = p1;
-                break;
+        }
+        for (String fn : to.keySet()) {
+            if (!from.containsKey(fn) && Utils.join(workDir, fn).isFile()) {
+                throw error(UNTRACKED_ERR);
             }
-            seen.add(cid1);
-            p1 = Commit.read(p1.getParent(b1));
-        }
-        while (split == null && p2.getParent(b2) != null) {
-            String cid1 = p1.getCommitUID();
-            String cid2 = p2.getCommitUID();
-            if (cid1.equals(cid2) || seen.contains(p2.getCommitUID())) {
-                split = p2;
-                break;
+        }
+    }
+
+    /**
+     * Reset the working directory WORKDIR of this repository, whose head
+     * moved from the tree FROM to the tree TO, the way checkoutCommit does
+     * for the local one: files of FROM that TO lacks are deleted, and files
+     * whose working copy does not hold the blob of TO are rewritten. The
+     * staging area is empty (see checkClean). Blobs are read from this
+     * repository's object store, which has all of TO.
+     */
+    private void resetWorkingTree(File workDir, Map<String, String> from, Map<String, String> to) {
+        for (String fn : from.keySet()) {
+            if (!to.containsKey(fn)) {
+                index.remove(fn);
+                File f = Utils.join(workDir, fn);
+                f.delete();
+                pruneEmptyDirectories(f.getParentFile(), workDir);
             }
-            seen.add(cid2);
-            p2 = Commit.read(p2.getParent(b2));
         }
-        // Split being null means the branches split at the initial commit
-        if (split == null) {
-            split = new Commit();
+        for (Map.Entry<String, String> entry : to.entrySet()) {
+            String fn = entry.getKey();
+            File f = Utils.join(workDir, fn);
+            if (!entry.getValue().equals(index.blobOf(fn, f))) {
+                f.getParentFile().mkdirs();
+                Blob.checkout(entry.getValue(), f);
+                index.record(fn, f, entry.getValue());
+            }
         }
-        return split;
     }
 
     /**
-     * Given the filename, given commit and original commit,
-     * check if the file content in the given commit has been modified.
-     * @param f filename
-     * @param given given commit
-     * @param origin original commit
-     * @return If the file content has been modified
+     * Fetches branch [remote name]/[remote branch name] as for the fetch
+     * command, and then merges that fetch into the current branch.
      */
-    private boolean isModified(String f, Commit given, Commit origin) {
-        Map<String, String> givenTree = given.getTree();
-        Map<String, String> originTree = origin.getTree();
-        assert givenTree.containsKey(f) && originTree.containsKey(f);
-        return !(givenTree.get(f).equals(originTree.get(f)));
+    public void pull(String remote, String branchName) {
+        fetch(remote, branchName);
+        // The fetched branch stands on its own, and merge reads it from disk
+        Journal.of(GITLET_DIR).commit();
+        merge(remote + "/" + branchName);
     }
 
+    /**
+     * Commit the command's updates to the branch files and the repository state
+     * through the journal (see Journal), so they all happen or none do.
+     * The repository state is only rewritten if it changed since it was loaded.
+     */
     public static void save(Repository repo) {
         if (repo == null) {
             return;
         }
-        Utils.writeObject(Utils.join(GITLET_DIR, "Repository"), repo);
+        String outer = Trace.phase("save");
+        try {
+            byte[] state = repo.encode();
+            Journal journal = Journal.of(GITLET_DIR);
+            if (!Arrays.equals(state, repo.saved)) {
+                journal.write(Utils.join(GITLET_DIR, "Repository"), state);
+                repo.saved = state;
+            }
+            journal.commit();
+            repo.index.saved(Utils.join(GITLET_DIR, "Repository"));
+            if (keepResident) {
+                resident = repo;
+                residentStamp = stamp();
+            }
+        } finally {
+            Trace.phase(outer);
+        }
+    }
+
+    /**
+     * From now on, keep the repository loaded between commands instead of
+     * decoding it again each time, for as long as the saved state on disk is
+     * the one it was loaded from or saved to.
+     */
+    static void keepResident() {
+        keepResident = true;
+    }
+
+    /** Forget the resident repository, e.g. after a command failed half way. */
+    static void dropResident() {
+        resident = null;
+        residentStamp = null;
+    }
+
+    /** Return something that changes whenever the saved state is replaced:
+     *  it is always replaced by a rename, so its file key (inode) changes. */
+    private static Object stamp() {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(
+                    Utils.join(GITLET_DIR, "Repository").toPath(), BasicFileAttributes.class);
+            return List.of(String.valueOf(attrs.fileKey()), attrs.lastModifiedTime(), attrs.size());
+        } catch (IOException e) {
+            return null;
+        }
     }
 
     /**
@@ -778,11 +950,85 @@ public class Repository implements Serializable, Dumpable {
      * @return
      */
     public static Repository load() {
+        String outer = Trace.phase("load");
         try {
-            return Utils.readObject(Utils.join(GITLET_DIR, "Repository"), Repository.class);
+            Journal.recover(GITLET_DIR);
+            if (resident != null && Objects.equals(residentStamp, stamp())) {
+                // A push from another repository may have moved the branch meanwhile
+                resident.resolveHead();
+                return resident;
+            }
+            Repository repo = decode(Utils.readContents(Utils.join(GITLET_DIR, "Repository")));
+            repo.resolveHead();
+            if (keepResident) {
+                resident = repo;
+                residentStamp = stamp();
+            }
+            return repo;
         } catch (IllegalArgumentException e) {
             throw Utils.error("Not in an initialized Gitlet directory.");
+        } finally {
+            Trace.phase(outer);
+        }
+    }
+
+    /**
+     * Point HEAD at the commit the current branch's ref names. The ref is the
+     * only record of it, so HEAD and the branch can never disagree.
+     */
+    private void resolveHead() {
+        String id = Refs.of(GITLET_DIR).get(currentBranch);
+        if (head == null || !head.getCommitUID().equals(id)) {
+            head = Commit.read(id);
+        }
+    }
+
+    /**
+     * Encode the repository state as: current branch,
+     * the files staged for addition as (file name, blob id) pairs,
+     * the file names staged for removal and the stat cache (see Index).
+     * HEAD is not saved, it is whatever the current branch's ref points to.
+     */
+    byte[] encode() {
+        Codec.Writer out = new Codec.Writer(MAGIC, VERSION);
+        out.writeString(currentBranch);
+        out.writeVarint(staging.stagedForAddition.size());
+        for (Map.Entry<String, String> entry : staging.stagedForAddition.entrySet()) {
+            out.writeString(entry.getKey()).writeId(entry.getValue());
+        }
+        out.writeVarint(staging.stagedForRemoval.size());
+        for (String filename : staging.stagedForRemoval) {
+            out.writeString(filename);
+        }
+        index.encode(out);
+        return out.toByteArray();
+    }
+
+    /** Decode a repository written by encode(). HEAD is left for load() to resolve. */
+    static Repository decode(byte[] data) {
+        return decode(data, GITLET_DIR);
+    }
+
+    /** Decode the state of the repository whose gitlet directory is GITLETDIR. */
+    private static Repository decode(byte[] data, File gitletDir) {
+        Codec.Reader in = new Codec.Reader(data, MAGIC);
+        if (in.version() != VERSION) {
+            throw new IllegalArgumentException("unsupported repository version " + in.version());
         }
+        Repository repo = new Repository(false);
+        repo.saved = data;
+        repo.currentBranch = in.readString();
+        repo.staging = new Staging();
+        int added = (int) in.readVarint();
+        for (int i = 0; i < added; i++) {
+            repo.staging.stagedForAddition.put(in.readString(), in.readId());
+        }
+        int removed = (int) in.readVarint();
+        for (int i = 0; i < removed; i++) {
+            repo.staging.stagedForRemoval.add(in.readString());
+        }
+        repo.index = Index.decode(in, Utils.join(gitletDir, "Repository"));
+        return repo;
     }
 
     /**
@@ -793,30 +1039,16 @@ public class Repository implements Serializable, Dumpable {
         COMMITS_DIR.mkdir();
         BRANCHES_DIR.mkdir();
         BLOBS_DIR.mkdir();
-    }
-
-    /**
-     * Clean the current working directory (except .gitlet/)
-     */
-    public void cleanDirectory() {
-        File dir = Utils.join(CWD);
-        File[] files = dir.listFiles();
-        assert files != null;
-        for (File file : files) {
-            if (!file.getName().equals(".gitlet")) {
-                file.delete();
-            }
-        }
+        TREES_DIR.mkdir();
     }
 
     // untracked = CWD - staged - (CWD & tracked)
     private List<String> getUntracked() {
-        List<String> cwd = plainFilenamesIn(CWD);
         List<String> staged = new LinkedList<>(staging.stagedForAddition.keySet());
         staged.addAll(staging.stagedForRemoval);
         // List<String> staged = staging.getStagedFiles();
         List<String> tracked = head.getTrackedFiles();
-        ArrayList<String> untracked = new ArrayList<>(plainFilenamesIn(CWD));
+        ArrayList<String> untracked = new ArrayList<>(workingFiles());
 
         for (String s : staged) {
             untracked.remove(s);
@@ -829,7 +1061,116 @@ public class Repository implements Serializable, Dumpable {
     }
 
     /**
-     * Helper method to check out files in a given commit. (Used both in checkout and reset)
+     * Files that are tracked in the head commit or staged for addition, and whose
+     * working copy was changed or deleted without staging that change,
+     * as "name (modified)" or "name (deleted)" entries in lexicographic order.
+     */
+    private List<String> getModifiedNotStaged() {
+        List<String> modified = new ArrayList<>();
+        for (Map.Entry<String, String> change : unstagedChanges().entrySet()) {
+            String state = change.getValue() == null ? " (deleted)" : " (modified)";
+            modified.add(change.getKey() + state);
+        }
+        return modified;
+    }
+
+    /**
+     * Return the files that are tracked in the head commit or staged for addition,
+     * and whose working copy differs from the staged or committed version, mapped
+     * to the blob id of the working copy (null if it was deleted), in path order.
+     * This is what both status and diff without arguments report.
+     * Files whose stat data is unchanged are not rehashed.
+     */
+    private Map<String, String> unstagedChanges() {
+        Map<String, String> expected = new HashMap<>(head.getTree());
+        expected.putAll(staging.stagedForAddition);
+        for (String fn : staging.stagedForRemoval) {
+            expected.remove(fn);
+        }
+        return workingChanges(expected);
+    }
+
+    /**
+     * Return the paths of EXPECTED (a map from path to blob id) whose working
+     * copy has a different blob, mapped to the working copy's blob id, or to
+     * null if it does not exist, in path order.
+     */
+    private Map<String, String> workingChanges(Map<String, String> expected) {
+        Map<String, String> changes = new TreeMap<>();
+        for (Map.Entry<String, String> entry : expected.entrySet()) {
+            String fn = entry.getKey();
+            String actual = index.blobOf(fn, Utils.join(CWD, fn));
+            if (!entry.getValue().equals(actual)) {
+                changes.put(fn, actual);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Print, as unified diffs, the changes
+     *   - from the staged (or committed) files to the working directory, with no
+     *     commit given, the changes status lists as not staged for commit;
+     *   - from the commit FROM to the working directory, with only FROM given;
+     *   - from the commit FROM to the commit TO, with both given.
+     * Only paths whose blob ids differ are diffed; between two commits,
+     * directories with the same tree id are skipped without being read.
+     *
+     * @param from commit id to diff from, or null
+     * @param to commit id to diff to, or null for the working directory
+     */
+    public void diff(String from, String to) {
+        if (to != null) {
+            Commit a = Commit.read(from);
+            Commit b = Commit.read(to);
+            for (String fn : Tree.changedPaths(a.getTreeID(), b.getTreeID())) {
+                printDiff(fn, a.getBlobName(fn), b.getBlobName(fn), null);
+            }
+            return;
+        }
+        Map<String, String> changes;
+        Map<String, String> expected;
+        if (from == null) {
+            changes = unstagedChanges();
+            expected = new HashMap<>(head.getTree());
+            expected.putAll(staging.stagedForAddition);
+        } else {
+            expected = Commit.read(from).getTree();
+            changes = workingChanges(expected);
+            // Files the commit lacks but that are tracked or staged show up as new
+            Set<String> tracked = new HashSet<>(head.getTrackedFiles());
+            tracked.addAll(staging.stagedForAddition.keySet());
+            for (String fn : tracked) {
+                String actual = index.blobOf(fn, Utils.join(CWD, fn));
+                if (!expected.containsKey(fn) && actual != null) {
+                    changes.put(fn, actual);
+                }
+            }
+        }
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            String fn = change.getKey();
+            File working = change.getValue() == null ? null : Utils.join(CWD, fn);
+            printDiff(fn, expected.get(fn), change.getValue(), working);
+        }
+    }
+
+    /** Print the unified diff of FILENAME from blob A to blob B (either may be null,
+     *  for a missing file), reading B from the file WORKING if that is given. */
+    private static void printDiff(String filename, String a, String b, File working) {
+        byte[] before = a == null ? null : Blob.read(a);
+        byte[] after = working != null ? Utils.readContents(working)
+                : b == null ? null : Blob.read(b);
+        System.out.print(Diff.unified(filename, before, after));
+    }
+
+    /**
+     * Helper method to check out files in a given commit. (Used in checkout, reset and merge)
+     *
+     * Only the paths where the working directory differs from the given commit are touched:
+     * files the commit doesn't track are deleted, and files whose blob differs are rewritten.
+     * A file whose blob is the same in the head commit and the given commit is left alone
+     * unless the stat cache or, failing that, its hash shows it was changed.
+     * The deletions and blob copies are spread over a bounded pool of worker threads.
      * @param commit
      */
     private void checkoutCommit(Commit commit) {
@@ -839,15 +1180,151 @@ public class Repository implements Serializable, Dumpable {
             throw error(UNTRACKED_ERR);
         }
 
-        // Delete all files under the current working directory
-        cleanDirectory();
+        Map<String, String> current = head.getTree();
+        Map<String, String> target = commit.getTree();
+
+        // Delete the tracked and staged files that the given commit doesn't track,
+        // and the directories they leave empty, before anything is written:
+        // a file of the given commit may take the place of one of those directories
+        Set<String> present = new HashSet<>(current.keySet());
+        present.addAll(staging.stagedForAddition.keySet());
+        for (String fn : present) {
+            if (!target.containsKey(fn)) {
+                index.remove(fn);
+                File f = Utils.join(CWD, fn);
+                f.delete();
+                pruneEmptyDirectories(f.getParentFile());
+            }
+        }
 
-        // Checkout tracked files in the given commit
-        for (String fn : commit.getTree().keySet()) {
-            // Read the blobs in the commit tree, and write to the files in CWD
-            String blob = commit.getBlobName(fn);
-            String c = Utils.readContentsAsString(Utils.join(BLOBS_DIR, blob));
-            writeContents(Utils.join(CWD, fn), c);
+        // Checkout the files of the given commit that don't already hold the right blob
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Map.Entry<String, String> entry : target.entrySet()) {
+            String fn = entry.getKey();
+            String blob = entry.getValue();
+            File f = Utils.join(CWD, fn);
+            String cached = index.cachedBlob(fn, f);
+            if (blob.equals(cached)) {
+                continue;
+            }
+            // A cache miss on a file the two commits agree on is settled by hashing it
+            boolean unchangedPath = cached == null && blob.equals(current.get(fn));
+            // Directories are made up front, so no two tasks race to create one
+            f.getParentFile().mkdirs();
+            tasks.add(() -> {
+                if (!(unchangedPath && f.isFile() && blob.equals(Blob.hash(f)))) {
+                    try {
+                        Blob.checkout(blob, f);
+                    } catch (IllegalArgumentException e) {
+                        throw error("Cannot check out %s: %s", fn, e.getMessage());
+                    }
+                }
+                return null;
+            });
+        }
+
+        runAll(tasks);
+
+        // Record the stat data of the files that were checked or written
+        for (Map.Entry<String, String> entry : target.entrySet()) {
+            File f = Utils.join(CWD, entry.getKey());
+            if (index.cachedBlob(entry.getKey(), f) == null) {
+                index.record(entry.getKey(), f, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Return the paths, relative to the working directory and separated by '/',
+     * of all plain files under the working directory outside .gitlet, in order.
+     */
+    private static List<String> workingFiles() {
+        List<String> files = new ArrayList<>();
+        listFiles(new File(CWD), "", files);
+        return files;
+    }
+
+    private static void listFiles(File dir, String prefix, List<String> files) {
+        String[] names = dir.list();
+        if (names == null) {
+            return;
+        }
+        Arrays.sort(names);
+        for (String name : names) {
+            File f = new File(dir, name);
+            if (f.isFile()) {
+                files.add(prefix + name);
+            } else if (f.isDirectory() && !f.equals(GITLET_DIR)) {
+                listFiles(f, prefix + name + "/", files);
+            }
+        }
+    }
+
+    /**
+     * Return FILENAME, a path relative to the working directory from user
+     * input, as files are named in commits: normalized, with '/' as
+     * separator. Paths that leave the working directory or lead into the
+     * gitlet directory are refused.
+     */
+    private static String trackedPath(String filename) {
+        Path path = Paths.get(filename).normalize();
+        if (path.isAbsolute() || path.toString().isEmpty()
+                || path.startsWith("..") || path.startsWith(GITLET_DIR.getName())) {
+            throw error(PATH_NOT_TRACKABLE_ERR);
+        }
+        return path.toString().replace(File.separatorChar, '/');
+    }
+
+    /** Delete DIR and its parents, up to the working directory, while they are empty. */
+    private static void pruneEmptyDirectories(File dir) {
+        pruneEmptyDirectories(dir, new File(CWD));
+    }
+
+    /** Delete DIR and its parents, up to the directory WORKDIR, while they are empty. */
+    private static void pruneEmptyDirectories(File dir, File workDir) {
+        while (dir != null && !dir.equals(workDir) && dir.delete()) {
+            dir = dir.getParentFile();
+        }
+    }
+
+    /**
+     * Run TASKS, spread over at most CHECKOUT_THREADS threads, and wait for all of them.
+     * The first failure of any task is rethrown.
+     */
+    private static void runAll(List<Callable<Void>> tasks) {
+        if (tasks.size() < 2) {
+            for (Callable<Void> task : tasks) {
+                call(task);
+            }
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(
+                Math.min(CHECKOUT_THREADS, tasks.size()));
+        try {
+            for (Future<Void> done : pool.invokeAll(tasks)) {
+                done.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw error("Checkout interrupted.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalArgumentException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Run TASK in the current thread. */
+    private static void call(Callable<Void> task) {
+        try {
+            task.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e);
         }
     }
 
@@ -855,16 +1332,24 @@ public class Repository implements Serializable, Dumpable {
     public void dump() {
         System.out.println("=============Dumping Repository=============");
         System.out.printf("current branch name: %s%n", currentBranch);
+        // Decoded on its own (see DumpObj), HEAD has not been resolved yet
+        if (head == null) {
+            resolveHead();
+        }
         System.out.printf("commit id: %s%n", head.getCommitUID());
         System.out.printf("commit msg: %s%n", head.getMessage());
         System.out.printf("commit timestamp: %s%n", head.getTimeStamp());
-        for (String branch : head.getBranches()) {
-            System.out.printf("commit is on branch %s, parent: %s%n",
-                    branch, head.getParent(branch));
+        System.out.printf("commit parents: %s%n", head.getParents());
+        for (Refs.Update update : Refs.of(GITLET_DIR).log(currentBranch)) {
+            System.out.printf("reflog: %s -> %s, %s%n",
+                    update.oldID, update.newID, update.reason);
         }
         System.out.println("staged for addition");
         for (Map.Entry<String, String> entry : staging.stagedForAddition.entrySet()) {
             System.out.printf("key: %s, value: %s%n", entry.getKey(), entry.getValue());
         }
+        System.out.println(Commit.CACHE.stats());
+        System.out.println(Tree.CACHE.stats());
+        System.out.println(Blob.CACHE.stats());
     }
 }
@@ -0,0 +1,211 @@
+package gitlet;
+
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Opt-in tracing of where a command spends its time.
+ *
+ *  Tracing is off unless the environment variable GITLET_TRACE is set, or
+ *  the command is run as `gitlet --trace COMMAND ...`.  When it is on, the
+ *  file and hashing utilities (readContents, writeContents, readObject,
+ *  writeObject, plainFilenamesIn and sha1, see Utils) count their calls,
+ *  the bytes they read, write or hash and the time they take, and once
+ *  the command is over a summary is printed on standard error: a table,
+ *  or a single line of JSON if GITLET_TRACE is "json" or the option is
+ *  --trace=json.
+ *
+ *  Everything is counted against the current phase of the command: "load"
+ *  while Repository.load runs, "save" while Repository.save runs, and the
+ *  name of the command otherwise.  Each phase also gets the wall time
+ *  spent in it, so the time spent outside the utilities shows as well.
+ *  writeObject writes through writeContents, and both are counted;
+ *  plainFilenamesIn counts no bytes.
+ *
+ *  When tracing is off each utility only pays for a test of a static
+ *  field.
+ *
+ *  @author Mingqian Yu
+ */
+class Trace {
+
+    /** The traced utilities. */
+    enum Op {
+        READ_CONTENTS("readContents"),
+        WRITE_CONTENTS("writeContents"),
+        READ_OBJECT("readObject"),
+        WRITE_OBJECT("writeObject"),
+        PLAIN_FILENAMES_IN("plainFilenamesIn"),
+        SHA1("sha1");
+
+        final String label;
+
+        Op(String label) {
+            this.label = label;
+        }
+    }
+
+    /** Indices of the counters of an operation. */
+    private static final int CALLS = 0;
+    private static final int BYTES = 1;
+    private static final int NANOS = 2;
+
+    /** What was counted in one phase. */
+    private static class Phase {
+        /** Wall time spent in this phase. */
+        long nanos;
+        /** Counters of each operation, indexed by ordinal, then CALLS, BYTES, NANOS. */
+        final long[][] ops = new long[Op.values().length][3];
+    }
+
+    private static final String ENV = System.getenv("GITLET_TRACE");
+
+    /** True iff tracing is on for the current command (see options). */
+    private static boolean enabled = ENV != null && !ENV.isEmpty();
+    /** True iff the summary is printed as JSON. */
+    private static boolean json = "json".equals(ENV);
+
+    /** The command being traced. */
+    private static String command;
+    /** The phases of the command, in the order they were first entered. */
+    private static final Map<String, Phase> phases = new LinkedHashMap<>();
+    /** The current phase and when it was entered. */
+    private static String current;
+    private static long since;
+    /** When the command started. */
+    private static long started;
+
+    /** Decide whether the command ARGS is traced, from GITLET_TRACE and the
+     *  --trace option ARGS may start with, and return ARGS without it.
+     *  This is decided afresh for every command: a server runs many, and an
+     *  option given to one must not trace the ones after it. */
+    static synchronized String[] options(String[] args) {
+        enabled = ENV != null && !ENV.isEmpty();
+        json = "json".equals(ENV);
+        if (args.length > 0 && (args[0].equals("--trace") || args[0].equals("--trace=json"))) {
+            enabled = true;
+            json = json || args[0].equals("--trace=json");
+            String[] rest = new String[args.length - 1];
+            System.arraycopy(args, 1, rest, 0, rest.length);
+            return rest;
+        }
+        return args;
+    }
+
+    /** Start tracing the command NAME, forgetting any previous one. */
+    static synchronized void begin(String name) {
+        if (!enabled) {
+            return;
+        }
+        command = name;
+        phases.clear();
+        started = System.nanoTime();
+        current = name;
+        since = started;
+    }
+
+    /** Enter the phase NAME and return the phase left, or null if tracing
+     *  is off.  A null NAME leaves the current phase alone. */
+    static synchronized String phase(String name) {
+        if (!enabled || command == null || name == null) {
+            return null;
+        }
+        String left = current;
+        long now = System.nanoTime();
+        phases.computeIfAbsent(current, k -> new Phase()).nanos += now - since;
+        current = name;
+        since = now;
+        return left;
+    }
+
+    /** Return the time an operation starts at, to be passed to record. */
+    static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /** Count a call of OP that started at START and went through BYTES bytes. */
+    static void record(Op op, long bytes, long start) {
+        if (!enabled) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        synchronized (Trace.class) {
+            if (command == null) {
+                return;
+            }
+            long[] counters = phases.computeIfAbsent(current, k -> new Phase()).ops[op.ordinal()];
+            counters[CALLS] += 1;
+            counters[BYTES] += bytes;
+            counters[NANOS] += nanos;
+        }
+    }
+
+    /** Finish tracing the current command and print its summary. */
+    static synchronized void end() {
+        if (!enabled || command == null) {
+            return;
+        }
+        phase(current);
+        long total = System.nanoTime() - started;
+        PrintStream out = System.err;
+        if (json) {
+            out.println(json(total));
+        } else {
+            table(out, total);
+        }
+        out.flush();
+        command = null;
+    }
+
+    /** Print the summary as a table on OUT; TOTAL is the wall time of the command. */
+    private static void table(PrintStream out, long total) {
+        out.printf("trace: %s, %.2f ms%n", command, millis(total));
+        out.printf("%-8s %-16s %8s %12s %10s%n", "phase", "operation", "calls", "bytes", "ms");
+        for (Map.Entry<String, Phase> entry : phases.entrySet()) {
+            Phase phase = entry.getValue();
+            out.printf("%-8s %-16s %8s %12s %10.2f%n", entry.getKey(), "(wall)", "", "",
+                    millis(phase.nanos));
+            for (Op op : Op.values()) {
+                long[] counters = phase.ops[op.ordinal()];
+                if (counters[CALLS] > 0) {
+                    out.printf("%-8s %-16s %8d %12d %10.2f%n", "", op.label,
+                            counters[CALLS], counters[BYTES], millis(counters[NANOS]));
+                }
+            }
+        }
+    }
+
+    /** Return the summary as a line of JSON; TOTAL is the wall time of the command. */
+    private static String json(long total) {
+        StringBuilder out = new StringBuilder();
+        out.append("{\"command\":\"").append(escape(command))
+                .append("\",\"nanos\":").append(total).append(",\"phases\":[");
+        String sep = "";
+        for (Map.Entry<String, Phase> entry : phases.entrySet()) {
+            Phase phase = entry.getValue();
+            out.append(sep).append("{\"phase\":\"").append(escape(entry.getKey()))
+                    .append("\",\"nanos\":").append(phase.nanos).append(",\"ops\":{");
+            String opSep = "";
+            for (Op op : Op.values()) {
+                long[] counters = phase.ops[op.ordinal()];
+                if (counters[CALLS] > 0) {
+                    out.append(opSep).append('"').append(op.label).append("\":{\"calls\":")
+                            .append(counters[CALLS]).append(",\"bytes\":").append(counters[BYTES])
+                            .append(",\"nanos\":").append(counters[NANOS]).append('}');
+                    opSep = ",";
+                }
+            }
+            out.append("}}");
+            sep = ",";
+        }
+        return out.append("]}").toString();
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
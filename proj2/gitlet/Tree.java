@@ -0,0 +1,229 @@
+package gitlet;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static gitlet.Constants.*;
+import static gitlet.Utils.*;
+
+/** Tree objects: the contents of one directory of a commit.
+ *
+ *  A tree maps the names in one directory to either a blob (a file) or
+ *  another tree (a subdirectory).  It is encoded as "GTRE", a version and
+ *  its entries in name order, each [kind][name][id] (see Codec), and stored
+ *  in TREES_DIR under the SHA-1 of that encoding.
+ *
+ *  Since a tree is named by its contents, a directory that did not change
+ *  between two commits is the very same tree object in both.  A commit only
+ *  writes the trees on the paths to the files it changed, and comparing two
+ *  commits never descends into a subtree whose id is the same on both sides.
+ *
+ *  Paths handed to and returned by this class are relative to the working
+ *  directory and use '/' as separator, e.g. "src/wug.txt".
+ *
+ *  @author Mingqian Yu
+ */
+class Tree {
+
+    private static final String MAGIC = "GTRE";
+    private static final int VERSION = 1;
+
+    /** Entry kinds. */
+    private static final int FILE = 0;
+    private static final int DIR = 1;
+
+    /** One name in a tree. */
+    private static class Entry {
+        final int kind;
+        final String id;
+
+        Entry(int kind, String id) {
+            this.kind = kind;
+            this.id = id;
+        }
+    }
+
+    /** Decoded trees, keyed by id.  Trees never change, so these never go stale. */
+    static final ObjectCache<Map<String, Entry>> CACHE = new ObjectCache<>("tree", 8 << 20,
+            entries -> 64 + 96L * entries.size());
+
+    /**
+     * Apply CHANGES to the tree ROOT (null for an empty tree) and return the
+     * id of the resulting tree.  CHANGES maps paths to their new blob id, or
+     * to null for paths to remove.  Only the trees on the changed paths are
+     * written; every other subtree is shared with ROOT.  Directories left
+     * empty disappear, except for the root itself.
+     */
+    static String update(String root, Map<String, String> changes) {
+        String id = updateDir(root, changes);
+        return id != null ? id : write(new TreeMap<>());
+    }
+
+    /** As update(), but returns null instead of an empty tree. */
+    private static String updateDir(String dir, Map<String, String> changes) {
+        if (changes.isEmpty()) {
+            return dir;
+        }
+        Map<String, Entry> entries = new TreeMap<>(dir == null ? Map.of() : read(dir));
+        // Group the changes by the first component of their paths
+        Map<String, Map<String, String>> below = new TreeMap<>();
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            String path = change.getKey();
+            int slash = path.indexOf('/');
+            if (slash < 0) {
+                if (change.getValue() == null) {
+                    entries.remove(path);
+                } else {
+                    entries.put(path, new Entry(FILE, change.getValue()));
+                }
+            } else {
+                below.computeIfAbsent(path.substring(0, slash), k -> new HashMap<>())
+                        .put(path.substring(slash + 1), change.getValue());
+            }
+        }
+        for (Map.Entry<String, Map<String, String>> sub : below.entrySet()) {
+            Entry old = entries.get(sub.getKey());
+            String subtree = updateDir(old != null && old.kind == DIR ? old.id : null,
+                    sub.getValue());
+            if (subtree == null) {
+                entries.remove(sub.getKey());
+            } else {
+                entries.put(sub.getKey(), new Entry(DIR, subtree));
+            }
+        }
+        return entries.isEmpty() ? null : write(entries);
+    }
+
+    /** Return every file under the tree ROOT, as a map from path to blob id. */
+    static Map<String, String> flatten(String root) {
+        Map<String, String> files = new HashMap<>();
+        flatten(root, "", files);
+        return files;
+    }
+
+    private static void flatten(String dir, String prefix, Map<String, String> files) {
+        for (Map.Entry<String, Entry> e : read(dir).entrySet()) {
+            Entry entry = e.getValue();
+            if (entry.kind == DIR) {
+                flatten(entry.id, prefix + e.getKey() + "/", files);
+            } else {
+                files.put(prefix + e.getKey(), entry.id);
+            }
+        }
+    }
+
+    /** Return the blob id of PATH in the tree ROOT, or null if there is no
+     *  such file.  Only the trees along PATH are read. */
+    static String lookup(String root, String path) {
+        String dir = root;
+        String[] names = path.split("/");
+        for (int i = 0; i < names.length; i++) {
+            Entry entry = read(dir).get(names[i]);
+            boolean last = i == names.length - 1;
+            if (entry == null || entry.kind != (last ? FILE : DIR)) {
+                return null;
+            }
+            if (last) {
+                return entry.id;
+            }
+            dir = entry.id;
+        }
+        return null;
+    }
+
+    /** Return the paths of the files whose blob differs between the trees A
+     *  and B, including files present in only one of them.  Subtrees with
+     *  the same id on both sides are skipped without being read. */
+    static Set<String> changedPaths(String a, String b) {
+        Set<String> changed = new TreeSet<>();
+        changedPaths(a, b, "", changed);
+        return changed;
+    }
+
+    private static void changedPaths(String a, String b, String prefix, Set<String> changed) {
+        if (Objects.equals(a, b)) {
+            return;
+        }
+        Map<String, Entry> left = a == null ? Map.of() : read(a);
+        Map<String, Entry> right = b == null ? Map.of() : read(b);
+        Set<String> names = new TreeSet<>(left.keySet());
+        names.addAll(right.keySet());
+        for (String name : names) {
+            Entry l = left.get(name);
+            Entry r = right.get(name);
+            if (l != null && r != null && l.kind == r.kind && l.id.equals(r.id)) {
+                continue;
+            }
+            // Either side may be a file, a directory or missing
+            if (l != null && l.kind == FILE || r != null && r.kind == FILE) {
+                String lf = l != null && l.kind == FILE ? l.id : null;
+                String rf = r != null && r.kind == FILE ? r.id : null;
+                if (!Objects.equals(lf, rf)) {
+                    changed.add(prefix + name);
+                }
+            }
+            String ld = l != null && l.kind == DIR ? l.id : null;
+            String rd = r != null && r.kind == DIR ? r.id : null;
+            if (ld != null || rd != null) {
+                changedPaths(ld, rd, prefix + name + "/", changed);
+            }
+        }
+    }
+
+    /** Store the tree made of ENTRIES, sorted by name, and return its id. */
+    private static String write(Map<String, Entry> entries) {
+        Codec.Writer out = new Codec.Writer(MAGIC, VERSION);
+        out.writeVarint(entries.size());
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            out.writeByte(e.getValue().kind).writeString(e.getKey()).writeId(e.getValue().id);
+        }
+        byte[] data = out.toByteArray();
+        String id = sha1((Object) data);
+        if (!ObjectStore.contains(TREES_DIR, id)) {
+            ObjectStore.write(TREES_DIR, id, (Object) data);
+        }
+        CACHE.put(id, entries);
+        return id;
+    }
+
+    /** Return the entries of the tree ID. */
+    private static Map<String, Entry> read(String id) {
+        Map<String, Entry> entries = CACHE.get(id);
+        if (entries != null) {
+            return entries;
+        }
+        entries = decode(ObjectStore.read(TREES_DIR, id));
+        CACHE.put(id, entries);
+        return entries;
+    }
+
+    /** Return the entries of the encoded tree DATA. */
+    private static Map<String, Entry> decode(byte[] data) {
+        Codec.Reader in = new Codec.Reader(data, MAGIC);
+        if (in.version() != VERSION) {
+            throw new IllegalArgumentException("unsupported tree version " + in.version());
+        }
+        int n = (int) in.readVarint();
+        Map<String, Entry> entries = new TreeMap<>();
+        for (int i = 0; i < n; i++) {
+            int kind = in.readByte();
+            String name = in.readString();
+            entries.put(name, new Entry(kind, in.readId()));
+        }
+        return entries;
+    }
+
+    /** Add the ids of the subtrees and of the blobs listed in the encoded
+     *  tree DATA to SUBTREES and BLOBS.  This works on trees of any
+     *  repository, as needed to copy objects between them (see Remote). */
+    static void children(byte[] data, Collection<String> subtrees, Collection<String> blobs) {
+        for (Entry entry : decode(data).values()) {
+            (entry.kind == DIR ? subtrees : blobs).add(entry.id);
+        }
+    }
+}